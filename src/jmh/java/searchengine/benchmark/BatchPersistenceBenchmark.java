@@ -0,0 +1,155 @@
+package searchengine.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import searchengine.config.ContentStoreSettings;
+import searchengine.config.IndexingPipelineSettings;
+import searchengine.config.LemmaDictionarySettings;
+import searchengine.config.PageWriterSettings;
+import searchengine.config.SearchSettings;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.services.CrawlMetrics;
+import searchengine.services.IndexingPipeline;
+import searchengine.services.LemmaDictionary;
+import searchengine.services.Lemmatizer;
+import searchengine.services.PageContents;
+import searchengine.services.PageIndexer;
+import searchengine.services.PageWriter;
+import searchengine.services.SiteStatisticsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись страниц, лемм и строк index настоящими PageWriter, LemmaDictionary и PageIndexer
+ * во встроенную H2 в режиме совместимости с MySQL. Одна операция — запись {@link #PAGES}
+ * страниц через очередь PageWriter пакетами по batchSize, их индексация стадией IndexingPipeline
+ * и сброс частот лемм, поэтому результаты с разным batchSize сравнимы между собой.
+ * Абсолютные значения не переносятся на MySQL, важно соотношение вариантов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BatchPersistenceBenchmark {
+
+    // Кратно всем batchSize: неполный пакет ждал бы flush-interval-ms
+    private static final int PAGES = 50;
+
+    // Схема таблиц, которые пишут PageWriter, LemmaDictionary и PageIndexer
+    private static final String[] SCHEMA = {
+            "CREATE TABLE site (id INT AUTO_INCREMENT PRIMARY KEY, url VARCHAR(255) NOT NULL, name VARCHAR(255) NOT NULL)",
+            "CREATE TABLE page (id INT AUTO_INCREMENT PRIMARY KEY, site_id INT NOT NULL, path VARCHAR(255) NOT NULL, "
+                    + "code INT NOT NULL, content CLOB, content_type VARCHAR(255), etag VARCHAR(255), "
+                    + "last_modified VARCHAR(255), content_hash VARCHAR(64), content_ref VARCHAR(64), title VARCHAR(512), "
+                    + "alias_of VARCHAR(255), simhash BIGINT, UNIQUE (site_id, path))",
+            "CREATE TABLE lemma (id INT AUTO_INCREMENT PRIMARY KEY, site_id INT NOT NULL, lemma VARCHAR(255) NOT NULL, "
+                    + "frequency INT NOT NULL, UNIQUE (site_id, lemma))",
+            "CREATE TABLE `index` (id INT AUTO_INCREMENT PRIMARY KEY, page_id INT NOT NULL, lemma_id INT NOT NULL, "
+                    + "`rank` FLOAT NOT NULL, positions BLOB)"
+    };
+
+    @Param({"1", "10", "50"})
+    public int batchSize;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private LemmaDictionary lemmaDictionary;
+    private IndexingPipeline indexingPipeline;
+    private PageWriter pageWriter;
+    private Site site;
+
+    private final List<String> pageTexts = new ArrayList<>();
+    private long pageCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(8);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        for (String ddl : SCHEMA) {
+            jdbcTemplate.execute(ddl);
+        }
+        jdbcTemplate.update("INSERT INTO site (url, name) VALUES (?, ?)", BenchmarkPages.SITE_URL, "Бенчмарк");
+        site = new Site();
+        site.setId(jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class));
+        site.setUrl(BenchmarkPages.SITE_URL);
+
+        CrawlMetrics metrics = new CrawlMetrics(new SimpleMeterRegistry());
+        SiteStatisticsRegistry statisticsRegistry = new SiteStatisticsRegistry(jdbcTemplate);
+        ContentStoreSettings contentStoreSettings = new ContentStoreSettings();
+        contentStoreSettings.setType(ContentStoreSettings.Type.INLINE);
+        PageContents pageContents = new PageContents(contentStoreSettings, jdbcTemplate, namedJdbcTemplate);
+        lemmaDictionary = new LemmaDictionary(jdbcTemplate, namedJdbcTemplate, new LemmaDictionarySettings(),
+                statisticsRegistry, metrics, transactionManager);
+        PageIndexer pageIndexer = new PageIndexer(new Lemmatizer(100_000), lemmaDictionary, jdbcTemplate,
+                namedJdbcTemplate, transactionManager, statisticsRegistry, pageContents, metrics, new SearchSettings());
+        // Поток индексации держит два соединения (вставка лемм идет в отдельной транзакции), поток записи — одно
+        IndexingPipelineSettings pipelineSettings = new IndexingPipelineSettings();
+        pipelineSettings.setParallelism(2);
+        indexingPipeline = new IndexingPipeline(pipelineSettings, pageIndexer, metrics);
+        PageWriterSettings writerSettings = new PageWriterSettings();
+        writerSettings.setBatchSize(batchSize);
+        pageWriter = new PageWriter(writerSettings, jdbcTemplate, namedJdbcTemplate, transactionManager,
+                indexingPipeline, statisticsRegistry, pageContents, metrics);
+        indexingPipeline.start();
+        pageWriter.start();
+
+        for (int i = 0; i < PAGES; i++) {
+            pageTexts.add(BenchmarkPages.text(i % 2 == 1, 40, i));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        // Идентификаторы лемм в памяти словаря после очистки таблицы недействительны
+        lemmaDictionary.discard(site.getId());
+        jdbcTemplate.execute("TRUNCATE TABLE `index`");
+        jdbcTemplate.execute("TRUNCATE TABLE lemma");
+        jdbcTemplate.execute("DELETE FROM page");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        pageWriter.stop();
+        pageWriter.awaitTermination();
+        indexingPipeline.stop();
+        indexingPipeline.awaitTermination();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public int writePages() throws InterruptedException {
+        for (int i = 0; i < PAGES; i++) {
+            pageWriter.write(page(i), true);
+        }
+        pageWriter.awaitSite(site.getId());
+        indexingPipeline.awaitSite(site.getId());
+        lemmaDictionary.flushAll();
+        return PAGES;
+    }
+
+    private Page page(int i) {
+        String text = pageTexts.get(i);
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath("/page-" + pageCounter++);
+        page.setCode(200);
+        page.setContent("<html><body><p>" + text + "</p></body></html>");
+        page.setText(text);
+        page.setContentType("text/html");
+        page.setContentHash(Integer.toHexString(text.hashCode()));
+        page.setTitle("Страница " + i);
+        return page;
+    }
+}
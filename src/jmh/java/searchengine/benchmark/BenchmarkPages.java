@@ -0,0 +1,75 @@
+package searchengine.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Детерминированные тестовые страницы для бенчмарков: текст из типичных фраз
+ * и HTML с навигацией, внутренними и внешними ссылками.
+ */
+final class BenchmarkPages {
+
+    static final String SITE_URL = "https://www.example.ru";
+
+    private static final String[] RUSSIAN = {
+            "Повторное появление леопарда в Осетии позволяет предположить, что леопард постоянно обитает в некоторых районах Северного Кавказа.",
+            "Интернет-магазин предлагает смартфоны, планшеты и аксессуары с доставкой по Москве и всей России.",
+            "Институт прикладной физики проводит фундаментальные и прикладные исследования в области радиофизики и электроники.",
+            "Сотрудники лаборатории опубликовали статью о новых методах диагностики плазмы в журнале.",
+            "Покупатели оставили отзывы о качестве товаров, скорости доставки и работе службы поддержки."
+    };
+
+    private static final String[] MIXED = {
+            "Сервер на Spring Boot отдает JSON через REST API, а кэширование настроено в Redis.",
+            "The search engine indexes pages and stores lemmas in a relational database.",
+            "Для сборки используется Maven, тесты запускаются командой mvn test на каждом коммите.",
+            "Crawling speed depends on network latency, politeness delays and the number of threads."
+    };
+
+    private BenchmarkPages() {
+    }
+
+    // Текст страницы примерно из sentences предложений
+    static String text(boolean mixed, int sentences, long seed) {
+        String[] source = mixed ? MIXED : RUSSIAN;
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            text.append(source[random.nextInt(source.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    // HTML-страница с links ссылками: большая часть внутренние, часть внешние и tel:
+    static String html(int links, long seed) {
+        Random random = new Random(seed);
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Каталог</title></head><body>");
+        html.append("<nav><a href=\"/\">Главная</a><a href=\"/catalog/\">Каталог</a><a href=\"/contacts\">Контакты</a></nav>");
+        html.append("<main>");
+        for (int i = 0; i < links; i++) {
+            html.append("<div class=\"item\"><p>").append(RUSSIAN[random.nextInt(RUSSIAN.length)]).append("</p>");
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                html.append("<a href=\"https://other.example.com/page/").append(i).append("\">Партнер</a>");
+            } else if (kind == 1) {
+                html.append("<a href=\"tel:+7495000").append(1000 + i).append("\">Позвонить</a>");
+            } else {
+                html.append("<a href=\"/catalog/item-").append(random.nextInt(links * 4)).append("?ref=list\">Товар</a>");
+            }
+            html.append("</div>");
+        }
+        html.append("</main></body></html>");
+        return html.toString();
+    }
+
+    // Нормализованные URL сайта; повторы имитируют ссылки на одни и те же страницы
+    static List<String> urls(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            urls.add(SITE_URL + "/catalog/section-" + random.nextInt(100) + "/item-" + random.nextInt(count));
+        }
+        return urls;
+    }
+}
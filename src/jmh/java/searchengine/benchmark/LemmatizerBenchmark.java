@@ -0,0 +1,89 @@
+package searchengine.benchmark;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.LemmaCounts;
+import searchengine.services.Lemmatizer;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Прежняя лемматизация, создававшая RussianLuceneMorphology на каждый вызов, против общего
+ * {@link Lemmatizer} с кэшем, и прежний разбор текста регулярными выражениями против
+ * однопроходного токенизатора. Выделение памяти на страницу показывает профилировщик
+ * -prof gc (включен в jmh.args профиля benchmarks): gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LemmatizerBenchmark {
+
+    private static final Set<String> EXCLUDED_PARTS_OF_SPEECH = Set.of("PART", "CONJ", "PREP", "INTJ");
+
+    // Русский текст или русский вперемешку с английским
+    @Param({"false", "true"})
+    public boolean mixed;
+
+    @Param({"60"})
+    public int sentences;
+
+    private String page;
+    private Lemmatizer lemmatizer;
+    private LemmaCounts counts;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkPages.text(mixed, sentences, 42);
+        lemmatizer = new Lemmatizer(100_000);
+        counts = new LemmaCounts();
+    }
+
+    // Копия прежней реализации TextProcessor.processText: словарь читается на каждой странице
+    @Benchmark
+    public Map<String, Integer> legacyProcessText() throws IOException {
+        LuceneMorphology luceneMorph = new RussianLuceneMorphology();
+        String[] words = page.toLowerCase().replaceAll("[^а-яё]", " ").split("\\s+");
+        Map<String, Integer> lemmaCounts = new HashMap<>();
+        for (String word : words) {
+            if (word.isEmpty()) continue;
+            for (String lemma : luceneMorph.getMorphInfo(word)) {
+                String lemmaBase = lemma.split("[|]")[0];
+                String partOfSpeech = lemma.split("[|]")[1];
+                if (!EXCLUDED_PARTS_OF_SPEECH.contains(partOfSpeech) && !lemmaBase.isEmpty()) {
+                    lemmaCounts.merge(lemmaBase, 1, Integer::sum);
+                }
+            }
+        }
+        return lemmaCounts;
+    }
+
+    @Benchmark
+    public Map<String, Integer> sharedLemmatizer() {
+        return lemmatizer.collectLemmas(page);
+    }
+
+    // Прежний разбор Lemmatizer.collectLemmas: копия в нижнем регистре, replaceAll и split, только кириллица
+    @Benchmark
+    public Map<String, Integer> regexTokenizer() {
+        Map<String, Integer> lemmaCounts = new HashMap<>();
+        String[] words = page.toLowerCase().replaceAll("[^а-яё]", " ").trim().split("\\s+");
+        for (String word : words) {
+            if (word.isEmpty()) continue;
+            for (String lemma : lemmatizer.getLemmas(word)) {
+                lemmaCounts.merge(lemma, 1, Integer::sum);
+            }
+        }
+        return lemmaCounts;
+    }
+
+    @Benchmark
+    public int tokenizer() {
+        counts.clear();
+        return lemmatizer.countLemmas(page, counts);
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.config.CanonicalRules;
+import searchengine.services.PageCrawler;
+import searchengine.services.RobotsRules;
+import searchengine.services.UrlCanonicalizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор HTML и извлечение ссылок так же, как в PageCrawler.processLinks:
+ * выборка a[href], абсолютный URL, классификация {@link PageCrawler#classifyLink}
+ * и каноническая форма ссылок на страницы сайта.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LinkExtractionBenchmark {
+
+    @Param({"50", "500"})
+    public int links;
+
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(new CanonicalRules());
+    private final RobotsRules robots = RobotsRules.allowAll();
+
+    private String html;
+    private String url;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        html = BenchmarkPages.html(links, 42);
+        url = BenchmarkPages.SITE_URL + "/catalog/";
+        document = Jsoup.parse(html, url);
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html, url);
+    }
+
+    @Benchmark
+    public void extractLinks(Blackhole blackhole) {
+        extract(document, blackhole);
+    }
+
+    @Benchmark
+    public void parseAndExtractLinks(Blackhole blackhole) {
+        extract(Jsoup.parse(html, url), blackhole);
+    }
+
+    private void extract(Document document, Blackhole blackhole) {
+        for (Element link : document.select("a[href]")) {
+            String childUrl = link.absUrl("href");
+            if (PageCrawler.classifyLink(childUrl, BenchmarkPages.SITE_URL, robots::isAllowed) == PageCrawler.LinkKind.PAGE) {
+                blackhole.consume(canonicalizer.canonicalize(childUrl));
+            } else {
+                blackhole.consume(childUrl);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.TextProcessor;
+import searchengine.services.LemmaCounts;
+import searchengine.services.Lemmatizer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация страницы: {@link TextProcessor#processText} и подсчет лемм
+ * в переиспользуемые счетчики, как это делает конвейер индексации.
+ * Кэш лемм прогревается на первых итерациях, замеры отражают установившийся режим.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TextProcessorBenchmark {
+
+    // Русский текст или русский вперемешку с английским
+    @Param({"false", "true"})
+    public boolean mixed;
+
+    @Param({"60"})
+    public int sentences;
+
+    private String page;
+    private Lemmatizer lemmatizer;
+    private TextProcessor textProcessor;
+    private LemmaCounts counts;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkPages.text(mixed, sentences, 42);
+        lemmatizer = new Lemmatizer(100_000);
+        textProcessor = new TextProcessor(lemmatizer);
+        counts = new LemmaCounts();
+    }
+
+    @Benchmark
+    public Map<String, Integer> processText() {
+        return textProcessor.processText(page);
+    }
+
+    @Benchmark
+    public int countLemmas() {
+        counts.clear();
+        lemmatizer.countLemmas(page, counts);
+        return counts.size();
+    }
+}
@@ -0,0 +1,55 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.FingerprintVisitedUrlSet;
+import searchengine.services.ConcurrentVisitedUrlSet;
+import searchengine.services.VisitedUrlSet;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конкурентная запись в множество посещенных URL из многих потоков обхода.
+ * Множество общее для всех потоков и пересоздается на каждой итерации,
+ * чтобы доля новых URL не падала до нуля.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+public class VisitedUrlSetBenchmark {
+
+    @Param({"CONCURRENT", "BLOOM"})
+    public String type;
+
+    @Param({"1000000"})
+    public int urlCount;
+
+    private List<String> urls;
+    private VisitedUrlSet visitedUrls;
+
+    @Setup(Level.Trial)
+    public void loadUrls() {
+        urls = BenchmarkPages.urls(urlCount, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void createSet() {
+        visitedUrls = "BLOOM".equals(type)
+                ? new FingerprintVisitedUrlSet(urlCount, 0.001)
+                : new ConcurrentVisitedUrlSet();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSet() {
+        visitedUrls.close();
+    }
+
+    @Benchmark
+    public boolean add() {
+        return visitedUrls.add(urls.get(ThreadLocalRandom.current().nextInt(urls.size())));
+    }
+}
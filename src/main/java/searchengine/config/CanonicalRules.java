@@ -0,0 +1,28 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Правила приведения URL сайта к каноническому виду. Канонический URL служит ключом
+ * посещенных ссылок и путем страницы, поэтому варианты одного адреса загружаются один раз.
+ */
+@Getter
+@Setter
+public class CanonicalRules {
+    // Путь без учета регистра: /Catalog и /catalog — одна страница
+    private boolean lowercasePath = false;
+    // Убирать завершающий "/" у путей, кроме корня
+    private boolean removeTrailingSlash = true;
+    // Имена индексных файлов, которые отбрасываются в конце пути
+    private List<String> indexFiles = List.of("index.html", "index.htm", "index.php", "default.aspx");
+    // Учитывать строку запроса; если false, все варианты запроса — одна страница
+    private boolean keepQuery = true;
+    // Отбрасываемые параметры отслеживания; "*" в конце означает префикс. Параметры, которые могут
+    // менять содержимое страницы (from, sessionid и т. п.), сайт добавляет в свой раздел canonical сам
+    private List<String> dropParams = List.of("utm_*", "gclid", "yclid", "fbclid", "_openstat");
+    // Сортировать оставшиеся параметры, чтобы их порядок не порождал новых адресов
+    private boolean sortParams = true;
+}
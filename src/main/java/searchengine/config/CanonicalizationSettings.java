@@ -0,0 +1,10 @@
+package searchengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// Правила по умолчанию для сайтов без собственного раздела canonical
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.canonical")
+public class CanonicalizationSettings extends CanonicalRules {
+}
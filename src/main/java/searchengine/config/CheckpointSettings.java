@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.checkpoint")
+public class CheckpointSettings {
+    // Вести журнал обхода, по которому остановленная индексация продолжается в режиме resume
+    private boolean enabled = true;
+    // Каталог журналов обхода
+    private String directory = "checkpoints";
+    // Период записи буфера журнала на диск
+    private long flushIntervalMs = 1_000;
+    // Журнал сжимается, когда вырос вдвое с последнего сжатия и превысил этот размер
+    private long compactMinBytes = 8L * 1024 * 1024;
+}
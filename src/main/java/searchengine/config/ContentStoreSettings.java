@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.content-store")
+public class ContentStoreSettings {
+
+    public enum Type {
+        // HTML хранится в столбце page.content, как раньше
+        INLINE,
+        // Сжатые HTML и текст в таблице page_content
+        DB,
+        // Сжатые HTML и текст в файлах-сегментах, чтение через отображение в память
+        FILE
+    }
+
+    private Type type = Type.DB;
+    // Уровень сжатия Deflate, от 1 (быстрее) до 9 (компактнее)
+    private int compressionLevel = 6;
+    // Каталог сегментов для типа FILE
+    private String directory = "content";
+    // Размер сегмента, после которого начинается следующий
+    private int segmentSizeMb = 256;
+    // Доля освобожденных байт, после которой сегмент типа FILE уплотняется
+    private double compactDeadRatio = 0.5;
+    // Период проверки сегментов на уплотнение
+    private long compactIntervalMs = 600000;
+}
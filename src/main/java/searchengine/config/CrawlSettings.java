@@ -0,0 +1,39 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.crawl")
+public class CrawlSettings {
+
+    public enum Mode {
+        // Общий для всех сайтов пул из global-workers потоков, делится между сайтами по весам
+        SHARED,
+        // Отдельный пул ForkJoinPool на сайт с числом потоков по количеству ядер
+        FORK_JOIN,
+        // Виртуальный поток на каждый запрос с ограничением одновременных запросов сайта
+        VIRTUAL_THREADS
+    }
+
+    public enum ReindexMode {
+        // Данные сайта удаляются, все страницы загружаются и индексируются заново
+        FULL,
+        // Условные запросы к сохраненным страницам, переиндексируются только измененные
+        INCREMENTAL,
+        // Продолжение остановленного обхода с фронтира из журнала; без журнала — как FULL
+        RESUME
+    }
+
+    private Mode mode = Mode.SHARED;
+    private ReindexMode reindexMode = ReindexMode.FULL;
+    // Максимум одновременно выполняемых задач сайта в режимах SHARED и VIRTUAL_THREADS,
+    // если для сайта не задан собственный max-in-flight
+    private int maxInFlightPerSite = 64;
+    // Число потоков общего пула обхода в режиме SHARED
+    private int globalWorkers = 16;
+}
@@ -0,0 +1,25 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.discovery")
+public class DiscoverySettings {
+    // Соблюдать правила robots.txt и Crawl-delay
+    private boolean robotsEnabled = true;
+    // Имя робота, по которому выбирается группа правил robots.txt
+    private String robotsAgent = "SearchEngineBot";
+    // Crawl-delay больше этого значения не увеличивает интервал между запросами
+    private long maxCrawlDelayMs = 30_000;
+    // Заполнять очередь обхода адресами из sitemap.xml
+    private boolean sitemapsEnabled = true;
+    // Не больше стольких URL из карт сайта на один обход
+    private int maxSitemapUrls = 50_000;
+    // Не больше стольких файлов карт, включая вложенные в sitemap index
+    private int maxSitemaps = 50;
+}
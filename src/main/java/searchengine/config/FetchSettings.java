@@ -0,0 +1,42 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.fetch")
+public class FetchSettings {
+
+    public enum Client {
+        // Общий java.net.http.HttpClient: HTTP/2, keep-alive, пул соединений
+        HTTP_CLIENT,
+        // Отдельное соединение Jsoup на каждый запрос
+        JSOUP
+    }
+
+    private Client client = Client.HTTP_CLIENT;
+    private String userAgent = "Mozilla/5.0 (compatible; SearchEngineBot/1.0)";
+    private int connectTimeoutMs = 10_000;
+    // Ожидание статуса и заголовков ответа
+    private int requestTimeoutMs = 30_000;
+    // Одновременных запросов к одному хосту; для HTTP/2 это потоки в общем соединении
+    private int maxConnectionsPerHost = 8;
+    // Тело ответа больше этого размера не загружается
+    private long maxBodyBytes = 5L * 1024 * 1024;
+    // Типы содержимого, тело которых загружается и индексируется
+    private List<String> indexableTypes = List.of("text/html", "application/xhtml+xml");
+    // Расширения, для которых сначала выполняется запрос HEAD вместо загрузки тела
+    private List<String> binaryExtensions = List.of(
+            "jpg", "jpeg", "png", "gif", "webp", "svg", "ico", "bmp", "tif", "tiff",
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx",
+            "zip", "rar", "7z", "gz", "tar", "bz2",
+            "mp3", "mp4", "avi", "mov", "mkv", "wav", "ogg", "webm",
+            "exe", "msi", "dmg", "iso", "apk", "bin",
+            "css", "js", "woff", "woff2", "ttf", "eot");
+}
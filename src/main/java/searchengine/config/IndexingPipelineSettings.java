@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.pipeline")
+public class IndexingPipelineSettings {
+    // Количество потоков лемматизации и записи индекса
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    // Емкость очереди страниц; при заполнении краулер ждет освобождения места
+    private int queueCapacity = 1_000;
+    // Сколько секунд ждать обработки очереди при остановке
+    private int drainTimeoutSeconds = 60;
+}
@@ -0,0 +1,15 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.lemma-dictionary")
+public class LemmaDictionarySettings {
+    // Через сколько проиндексированных страниц накопленные частоты записываются в базу
+    private int flushEveryPages = 500;
+}
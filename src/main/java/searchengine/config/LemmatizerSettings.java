@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.lemmatizer")
+public class LemmatizerSettings {
+    // Максимальное количество словоформ в кэше слово -> леммы
+    private int cacheSize = 100_000;
+    // Лемматизировать ли слова на латинице английским словарем
+    private boolean englishEnabled = true;
+}
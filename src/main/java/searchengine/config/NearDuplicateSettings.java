@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.near-duplicates")
+public class NearDuplicateSettings {
+    // Не индексировать страницы, почти совпадающие по тексту с уже обойденными
+    private boolean enabled = true;
+    // Наибольшее расстояние Хэмминга между SimHash почти одинаковых текстов (не больше 3)
+    private int maxDistance = 3;
+    // Тексты короче этого числа слов не сравниваются: у них слишком мало признаков
+    private int minWords = 50;
+}
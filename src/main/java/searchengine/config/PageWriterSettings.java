@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.page-writer")
+public class PageWriterSettings {
+    // Количество страниц в одном пакетном INSERT
+    private int batchSize = 200;
+    // Максимальное время накопления пакета
+    private long flushIntervalMs = 1_000;
+    // Емкость очереди записи; при заполнении краулер ждет
+    private int queueCapacity = 5_000;
+}
@@ -0,0 +1,15 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.politeness")
+public class PolitenessSettings {
+    // Минимальный интервал между запросами к одному хосту, если для сайта он не задан
+    private long defaultIntervalMs = 500;
+}
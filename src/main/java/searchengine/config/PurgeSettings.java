@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.purge")
+public class PurgeSettings {
+    // Страниц в одной транзакции удаления вместе с их строками index
+    private int pagesPerChunk = 200;
+    // Лемм в одной транзакции удаления
+    private int lemmasPerChunk = 5_000;
+}
@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.search")
+public class SearchSettings {
+    // Леммы, встречающиеся на большей доле страниц сайта, исключаются из запроса
+    private double maxLemmaPageShare = 0.8;
+    // Длина фрагмента текста в результатах поиска
+    private int snippetLength = 240;
+    // Сколько первых вхождений леммы на странице хранится в index для построения фрагментов
+    private int storedPositions = 32;
+}
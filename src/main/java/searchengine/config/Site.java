@@ -8,4 +8,13 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    // Минимальный интервал между запросами к хосту сайта в миллисекундах
+    private Long requestIntervalMs;
+    // Ограничение одновременных запросов к сайту в режимах SHARED и VIRTUAL_THREADS,
+    // по умолчанию indexing-settings.crawl.max-in-flight-per-site
+    private Integer maxInFlight;
+    // Доля сайта в общем пуле обхода относительно других сайтов, по умолчанию 1
+    private Integer weight;
+    // Собственные правила канонических URL сайта вместо indexing-settings.canonical
+    private CanonicalRules canonical;
 }
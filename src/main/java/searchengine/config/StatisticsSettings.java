@@ -0,0 +1,15 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.statistics")
+public class StatisticsSettings {
+    // Период сверки счетчиков страниц и лемм с базой
+    private long reconcileIntervalMs = 300_000;
+}
@@ -0,0 +1,27 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.visited-set")
+public class VisitedUrlSettings {
+
+    public enum Type {
+        // Все URL хранятся в куче в конкурентном множестве
+        CONCURRENT,
+        // Фильтр Блума вне кучи и множество 64-битных отпечатков URL:
+        // новый URL пропускается при совпадении отпечатка, вероятность около n / 2^64
+        BLOOM
+    }
+
+    private Type type = Type.CONCURRENT;
+    // Ожидаемое количество ссылок сайта, по нему рассчитывается размер фильтра Блума
+    private long expectedUrls = 1_000_000;
+    // Допустимая доля ложных срабатываний фильтра Блума; от нее зависят лишние поиски отпечатка, а не потеря ссылок
+    private double falsePositiveRate = 0.01;
+}
@@ -2,8 +2,10 @@ package searchengine.controllers;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import searchengine.dto.search.SearchResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.IndexingService;
+import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
 import java.util.HashMap;
@@ -17,11 +19,14 @@ public class ApiController {
 
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
+    private final SearchService searchService;
     private final ExecutorService executorService;
 
-    public ApiController(StatisticsService statisticsService, IndexingService indexingService) {
+    public ApiController(StatisticsService statisticsService, IndexingService indexingService,
+                         SearchService searchService) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
+        this.searchService = searchService;
         this.executorService = Executors.newSingleThreadExecutor();
     }
 
@@ -72,8 +77,26 @@ public class ApiController {
             return ResponseEntity.badRequest().body(response);
         }
 
-        indexingService.indexPage(url);
+        try {
+            indexingService.indexPage(url);
+        } catch (IllegalStateException e) {
+            response.put("result", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
         response.put("result", true);
         return ResponseEntity.ok(response);
     }
+
+    @GetMapping("/search")
+    public ResponseEntity<SearchResponse> search(@RequestParam(required = false) String query,
+                                                 @RequestParam(required = false) String site,
+                                                 @RequestParam(defaultValue = "0") int offset,
+                                                 @RequestParam(defaultValue = "20") int limit) {
+        SearchResponse response = searchService.search(query, site, offset, limit);
+        if (!response.isResult()) {
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
 }
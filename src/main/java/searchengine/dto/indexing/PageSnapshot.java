@@ -0,0 +1,6 @@
+package searchengine.dto.indexing;
+
+// Сведения о ранее сохраненной странице для повторного обхода; aliasOf задан у неиндексируемых почти дубликатов
+public record PageSnapshot(Integer id, String path, String etag, String lastModified, String contentHash,
+                           String aliasOf, Long simhash) {
+}
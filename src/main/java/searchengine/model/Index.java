@@ -6,7 +6,10 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 @Entity
-@Table(name = "`index`")
+@Table(name = "`index`", indexes = {
+        @jakarta.persistence.Index(name = "idx_index_lemma_page", columnList = "lemma_id, page_id"),
+        @jakarta.persistence.Index(name = "idx_index_page", columnList = "page_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,4 +30,8 @@ public class Index {
 
     @Column(name = "`rank`", nullable = false)
     private Float rank;
+
+    // Границы первых вхождений леммы в тексте страницы, см. TokenPositions; null у строк прежних версий
+    @Column(name = "positions", columnDefinition = "BLOB")
+    private byte[] positions;
 }
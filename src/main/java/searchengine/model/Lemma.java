@@ -6,7 +6,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 @Entity
-@Table(name = "lemma")
+@Table(name = "lemma", uniqueConstraints = @UniqueConstraint(name = "uk_lemma_site", columnNames = {"site_id", "lemma"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,7 +20,8 @@ public class Lemma {
     @Column(name = "site_id", nullable = false)
     private Integer siteId;
 
-    @Column(name = "lemma", nullable = false, length = 255)
+    // Двоичное сравнение: ё и е, регистр и диакритика различаются так же, как в словаре лемм в памяти
+    @Column(name = "lemma", nullable = false, columnDefinition = "VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin")
     private String lemma;
 
     @Column(name = "frequency", nullable = false)
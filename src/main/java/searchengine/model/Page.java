@@ -6,7 +6,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 @Entity
-@Table(name = "page", indexes = {@jakarta.persistence.Index(name = "idx_path", columnList = "path")})
+@Table(name = "page", uniqueConstraints = @UniqueConstraint(name = "uk_page_site_path", columnNames = {"site_id", "path"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,8 +27,31 @@ public class Page {
     private int code;
 
     @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
-    private String content;
+    private String content; // HTML при хранении INLINE, иначе пустая строка
+
+    @Column(name = "content_ref", length = 64)
+    private String contentRef; // Ссылка на сжатое содержимое во внешнем хранилище
+
+    @Column(length = 512)
+    private String title; // Заголовок страницы для выдачи поиска
+
+    @Transient
+    private String text; // Текст страницы, пока она идет от краулера к индексатору
 
     @Column(length = 255)
     private String contentType; // Столбец для хранения типа содержимого (например, "image/png")
+
+    @Column(length = 255)
+    private String etag; // Заголовок ETag ответа для условных запросов
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified; // Заголовок Last-Modified ответа
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 текста страницы для обнаружения изменений
+
+    @Column(name = "alias_of", length = 255)
+    private String aliasOf; // Путь страницы, почти дубликатом которой является эта; такая страница не индексируется
+
+    private Long simhash; // SimHash текста для поиска почти одинаковых страниц
 }
@@ -0,0 +1,28 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+// Сжатые HTML и текст страницы вне строки page; связь со страницей — page.content_ref
+@Entity
+@Table(name = "page_content", indexes = @jakarta.persistence.Index(name = "idx_page_content_site", columnList = "site_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageContent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "site_id", nullable = false)
+    private Integer siteId;
+
+    @Column(columnDefinition = "LONGBLOB", nullable = false)
+    private byte[] html;
+
+    @Column(columnDefinition = "MEDIUMBLOB", nullable = false)
+    private byte[] text;
+}
@@ -9,7 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "site")
+@Table(name = "site", uniqueConstraints = @UniqueConstraint(name = "uk_site_url_generation", columnNames = {"url", "generation"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,13 +29,20 @@ public class Site {
     @Column(columnDefinition = "TEXT")
     private String lastError;
 
-    @Column(length = 255, nullable = false, unique = true)
+    @Column(length = 255, nullable = false)
     private String url;
 
+    @Column(nullable = false)
+    private int generation; // Номер поколения индекса сайта; у одного URL может быть несколько поколений
+
+    @Column(nullable = false, columnDefinition = "BOOLEAN DEFAULT TRUE")
+    private boolean live = true; // Поколение, которое обслуживает поиск и статистику
+
     @Column(length = 255, nullable = false)
     private String name;
 
-    @OneToMany(mappedBy = "site", cascade = CascadeType.ALL, orphanRemoval = true)
+    // Без каскадов: данные сайта удаляются порциями через SitePurgeService
+    @OneToMany(mappedBy = "site")
     private List<Page> pages = new ArrayList<>();
 
     public void addPage(Page page) {
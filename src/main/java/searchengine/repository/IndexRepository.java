@@ -15,4 +15,10 @@ public interface IndexRepository extends JpaRepository<Index, Integer> {
     @Transactional
     @Query("DELETE FROM Index i WHERE i.page.id = :pageId")
     void deleteAllByPageId(int pageId);
+
+    // Удалить все записи из таблицы index для страниц сайта
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Index i WHERE i.page.id IN (SELECT p.id FROM Page p WHERE p.site.id = :siteId)")
+    int deleteAllBySiteId(int siteId);
 }
@@ -1,7 +1,10 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
 
 import java.util.Optional;
@@ -10,4 +13,13 @@ import java.util.Optional;
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     // Поиск леммы по тексту
     Optional<Lemma> findByLemma(String lemma);
+
+    // Поиск леммы в пределах сайта
+    Optional<Lemma> findBySiteIdAndLemma(Integer siteId, String lemma);
+
+    // Удалить все леммы сайта
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Lemma l WHERE l.siteId = :siteId")
+    int deleteAllBySiteId(int siteId);
 }
@@ -1,11 +1,16 @@
 package searchengine.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.jpa.repository.Modifying;
+import searchengine.dto.indexing.PageSnapshot;
 import searchengine.model.Page;
+
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,10 +21,22 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     @Query("DELETE FROM Page p WHERE p.site.id = :siteId")
     int deleteAllBySiteId(int siteId);
 
-    @Query("SELECT COUNT(p) > 0 FROM Page p WHERE p.path = :path AND p.site.id = :siteId")
-    boolean existsByPathAndSiteId(String path, int siteId);
-
-    boolean existsBySiteAndPath(searchengine.model.Site site, String path);
     @Query("SELECT p FROM Page p WHERE p.path = :path AND p.site.id = :siteId")
     Optional<Page> findByPathAndSiteId(String path, int siteId);
+
+    // Страница с блокировкой строки до конца транзакции: переиндексации одной страницы выполняются по очереди
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Page p WHERE p.path = :path AND p.site.id = :siteId")
+    Optional<Page> findForUpdate(String path, int siteId);
+
+    // Новые валидаторы условного запроса страницы, содержимое которой не изменилось
+    @Modifying
+    @Transactional
+    @Query("UPDATE Page p SET p.etag = :etag, p.lastModified = :lastModified WHERE p.id = :id")
+    int updateValidators(int id, String etag, String lastModified);
+
+    @Query("SELECT new searchengine.dto.indexing.PageSnapshot(p.id, p.path, p.etag, p.lastModified, p.contentHash, " +
+            "p.aliasOf, p.simhash) " +
+            "FROM Page p WHERE p.site.id = :siteId")
+    List<PageSnapshot> findSnapshotsBySiteId(int siteId);
 }
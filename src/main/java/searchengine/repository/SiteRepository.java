@@ -1,17 +1,43 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 import searchengine.model.IndexingStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Integer> {
-    // Найти сайт по URL
+    // Найти действующее поколение сайта по URL
+    @Query("SELECT s FROM Site s WHERE s.url = :url AND s.live = true")
     Site findByUrl(String url);
 
+    // Действующие поколения всех сайтов
+    List<Site> findAllByLiveTrue();
+
+    // Выведенные из работы поколения, которые больше не строятся; прерванные остановкой
+    // приложения поколения получают статус FAILED при следующем запуске
+    @Query("SELECT s FROM Site s WHERE s.live = false AND s.status <> searchengine.model.IndexingStatus.INDEXING")
+    List<Site> findRetired();
+
+    @Query("SELECT COALESCE(MAX(s.generation), 0) FROM Site s WHERE s.url = :url")
+    int findMaxGeneration(String url);
+
+    // Одним запросом делает поколение newId действующим со статусом status, а oldId — выведенным.
+    // Построенное поколение ни в какой момент не выглядит выведенным для findRetired
+    @Modifying
+    @Transactional
+    @Query("UPDATE Site s SET s.live = CASE WHEN s.id = :newId THEN true ELSE false END, " +
+            "s.status = CASE WHEN s.id = :newId THEN :status ELSE s.status END, " +
+            "s.statusTime = CASE WHEN s.id = :newId THEN :statusTime ELSE s.statusTime END " +
+            "WHERE s.id IN (:oldId, :newId)")
+    int switchLive(int oldId, int newId, IndexingStatus status, LocalDateTime statusTime);
+
     // Найти все сайты по статусу
     List<Site> findAllByStatus(IndexingStatus status);
 }
@@ -0,0 +1,10 @@
+package searchengine.services;
+
+/**
+ * Задача, которую исполнитель может снять, так и не запустив. Метод abort выполняет
+ * завершающие действия задачи, например уменьшает счетчик незавершенных задач обхода.
+ */
+public interface AbortableTask extends Runnable {
+
+    void abort();
+}
@@ -0,0 +1,94 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Исполнитель, запускающий каждую задачу в отдельном виртуальном потоке.
+ * Семафор ограничивает число задач, выполняющихся одновременно; остальные
+ * виртуальные потоки ждут разрешения, не занимая потоков платформы. Задача, поток
+ * которой прерван в ожидании разрешения, не запускается: у {@link AbortableTask}
+ * выполняются завершающие действия, {@link Future} отменяется.
+ */
+public class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedVirtualThreadExecutor.class);
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxInFlight;
+
+    public BoundedVirtualThreadExecutor(String name, int maxInFlight) {
+        ThreadFactory factory = Thread.ofVirtual().name(name + "-", 1).factory();
+        this.delegate = Executors.newThreadPerTaskExecutor(factory);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.permits = new Semaphore(this.maxInFlight);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        delegate.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort(task);
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private static void abort(Runnable task) {
+        if (task instanceof AbortableTask abortable) {
+            abortable.abort();
+        } else if (task instanceof Future<?> future) {
+            future.cancel(false);
+        } else {
+            logger.warn("Задача {} снята без запуска: поток прерван в ожидании разрешения.", task);
+        }
+    }
+
+    // Количество задач, выполняющихся прямо сейчас
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
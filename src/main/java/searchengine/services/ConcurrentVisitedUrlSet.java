@@ -0,0 +1,42 @@
+package searchengine.services;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Множество посещенных URL в куче на основе ConcurrentHashMap: проверка и вставка
+ * выполняются одной атомарной операцией без общей блокировки.
+ */
+public class ConcurrentVisitedUrlSet implements VisitedUrlSet {
+
+    // Заголовок строки, массива и узла хеш-таблицы на 64-битной JVM
+    private static final int ENTRY_OVERHEAD_BYTES = 88;
+
+    private final Set<String> urls = ConcurrentHashMap.newKeySet();
+    private final LongAdder chars = new LongAdder();
+
+    @Override
+    public boolean add(String normalizedUrl) {
+        if (urls.add(normalizedUrl)) {
+            chars.add(normalizedUrl.length());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return urls.size();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return size() * ENTRY_OVERHEAD_BYTES + chars.sum();
+    }
+
+    @Override
+    public double falsePositiveRate() {
+        return 0;
+    }
+}
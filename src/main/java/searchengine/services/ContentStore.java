@@ -0,0 +1,39 @@
+package searchengine.services;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище содержимого страниц вне таблицы page. Строка page хранит только ссылку,
+ * которую возвращает {@link #write}. Содержимое страниц пакета записи сохраняется одним вызовом.
+ */
+public interface ContentStore {
+
+    // Сохраняет HTML и текст страниц и возвращает ссылки в том же порядке
+    List<String> write(List<NewContent> contents);
+
+    StoredContent read(String ref);
+
+    // Тексты нескольких страниц: ссылка -> текст
+    default Map<String, String> readTexts(Collection<String> refs) {
+        Map<String, String> texts = new HashMap<>();
+        for (String ref : refs) {
+            texts.put(ref, read(ref).text());
+        }
+        return texts;
+    }
+
+    // Освобождает содержимое, на которое больше не ссылается ни одна страница
+    void delete(Collection<String> refs);
+
+    // Удаляет все содержимое сайта
+    void deleteSite(int siteId);
+
+    record NewContent(int siteId, String html, String text) {
+    }
+
+    record StoredContent(String html, String text) {
+    }
+}
@@ -0,0 +1,180 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Журнал обхода одного поколения сайта: строка "Q url" пишется при постановке URL в очередь,
+ * "D url" — после его обработки. Поставленные URL образуют множество посещенных,
+ * а поставленные, но не обработанные — фронтир, с которого продолжается остановленный обход.
+ * Журнал только дописывается; при росте он сжимается до одной строки на URL.
+ * "D" пишется, когда страница передана PageWriter, но еще может быть не записана в базу;
+ * такие URL продолжение обхода находит по отсутствию страницы и обходит заново.
+ */
+public class CrawlCheckpoint implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlCheckpoint.class);
+
+    private static final CrawlCheckpoint DISABLED = new CrawlCheckpoint();
+
+    private final Path file;
+    private final long compactMinBytes;
+    private BufferedWriter writer;
+    private long compactedSize;
+
+    private CrawlCheckpoint() {
+        this.file = null;
+        this.compactMinBytes = 0;
+    }
+
+    CrawlCheckpoint(Path file, long compactMinBytes) throws IOException {
+        this.file = file;
+        this.compactMinBytes = compactMinBytes;
+        this.writer = open();
+        this.compactedSize = Files.size(file);
+    }
+
+    // Журнал, который ничего не записывает, для обходов без возможности продолжения
+    public static CrawlCheckpoint disabled() {
+        return DISABLED;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void queued(String url) {
+        append('Q', url);
+    }
+
+    public void done(String url) {
+        append('D', url);
+    }
+
+    /**
+     * Читает журнал: возвращает все поставленные в очередь URL и те из них, что не были обработаны.
+     */
+    public synchronized State load() {
+        if (file == null) {
+            return new State(List.of(), List.of());
+        }
+        flush();
+        Map<String, Boolean> urls = readUrls();
+        List<String> frontier = new ArrayList<>();
+        urls.forEach((url, done) -> {
+            if (!done) frontier.add(url);
+        });
+        return new State(new ArrayList<>(urls.keySet()), frontier);
+    }
+
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            logger.warn("Ошибка записи журнала обхода {}: {}", file, e.getMessage());
+        }
+    }
+
+    // Сжимает журнал до одной строки на URL, если он заметно вырос
+    public synchronized void compactIfNeeded() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+            long size = Files.size(file);
+            if (size < compactMinBytes || size < compactedSize * 2) {
+                return;
+            }
+            Map<String, Boolean> urls = readUrls();
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Boolean> entry : urls.entrySet()) {
+                    out.write(entry.getValue() ? 'D' : 'Q');
+                    out.write(' ');
+                    out.write(entry.getKey());
+                    out.newLine();
+                }
+            }
+            writer.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writer = open();
+            compactedSize = Files.size(file);
+            logger.info("Журнал обхода {} сжат: {} -> {} байт, URL {}.", file.getFileName(), size, compactedSize, urls.size());
+        } catch (IOException e) {
+            logger.warn("Ошибка сжатия журнала обхода {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("Ошибка закрытия журнала обхода {}: {}", file, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private synchronized void append(char type, String url) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(type);
+            writer.write(' ');
+            writer.write(url);
+            writer.newLine();
+        } catch (IOException e) {
+            logger.warn("Ошибка записи журнала обхода {}: {}", file, e.getMessage());
+        }
+    }
+
+    // URL в порядке первой постановки -> признак обработки
+    private Map<String, Boolean> readUrls() {
+        Map<String, Boolean> urls = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() < 3) continue; // Недописанная при остановке строка
+                String url = line.substring(2);
+                if (line.charAt(0) == 'D') {
+                    urls.put(url, true);
+                } else {
+                    urls.putIfAbsent(url, false);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return urls;
+    }
+
+    private BufferedWriter open() throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public record State(List<String> visited, List<String> frontier) {
+    }
+}
@@ -0,0 +1,137 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.CheckpointSettings;
+import searchengine.model.Site;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Журналы обхода в локальном каталоге, по файлу на поколение сайта: {@code <хеш url>-<id сайта>.log}.
+ * Открытые журналы периодически сбрасываются на диск и при необходимости сжимаются.
+ */
+@Component
+public class CrawlCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlCheckpointStore.class);
+
+    private final CheckpointSettings settings;
+    private final Map<Integer, CrawlCheckpoint> open = new ConcurrentHashMap<>();
+
+    public CrawlCheckpointStore(CheckpointSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Открывает журнал поколения для дописывания. Журналы других поколений того же сайта удаляются:
+     * продолжить можно только последний обход.
+     */
+    public CrawlCheckpoint open(Site site) {
+        if (!settings.isEnabled()) {
+            return CrawlCheckpoint.disabled();
+        }
+        try {
+            Path directory = Files.createDirectories(Paths.get(settings.getDirectory()));
+            for (Path other : filesOf(site.getUrl())) {
+                if (!other.equals(fileOf(directory, site))) {
+                    Files.deleteIfExists(other);
+                }
+            }
+            CrawlCheckpoint checkpoint = new CrawlCheckpoint(fileOf(directory, site), settings.getCompactMinBytes());
+            open.put(site.getId(), checkpoint);
+            return checkpoint;
+        } catch (IOException e) {
+            logger.warn("Журнал обхода сайта {} не открыт, продолжение будет невозможно: {}", site.getUrl(), e.getMessage());
+            return CrawlCheckpoint.disabled();
+        }
+    }
+
+    // Идентификатор последнего поколения сайта, для которого есть журнал
+    public Optional<Integer> findResumable(String siteUrl) {
+        return filesOf(siteUrl).stream()
+                .map(CrawlCheckpointStore::siteIdOf)
+                .max(Integer::compare);
+    }
+
+    public boolean exists(int siteId) {
+        if (!settings.isEnabled()) {
+            return false;
+        }
+        try (Stream<Path> files = list()) {
+            return files.anyMatch(file -> siteIdOf(file) == siteId);
+        }
+    }
+
+    // Закрывает журнал; файл остается для продолжения обхода
+    public void close(int siteId) {
+        CrawlCheckpoint checkpoint = open.remove(siteId);
+        if (checkpoint != null) {
+            checkpoint.close();
+        }
+    }
+
+    // Удаляет журнал завершенного обхода
+    public void delete(Site site) {
+        close(site.getId());
+        if (!settings.isEnabled()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(fileOf(Paths.get(settings.getDirectory()), site));
+        } catch (IOException e) {
+            logger.warn("Журнал обхода сайта {} не удален: {}", site.getUrl(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${indexing-settings.checkpoint.flush-interval-ms:1000}")
+    public void flushAll() {
+        open.values().forEach(checkpoint -> {
+            checkpoint.flush();
+            checkpoint.compactIfNeeded();
+        });
+    }
+
+    private List<Path> filesOf(String siteUrl) {
+        String prefix = hash(siteUrl) + "-";
+        try (Stream<Path> files = list()) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).toList();
+        }
+    }
+
+    private Stream<Path> list() {
+        Path directory = Paths.get(settings.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            return Stream.empty();
+        }
+        try {
+            return Files.list(directory).filter(file -> file.getFileName().toString().endsWith(".log"));
+        } catch (IOException e) {
+            logger.warn("Каталог журналов обхода {} недоступен: {}", directory, e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    private static Path fileOf(Path directory, Site site) {
+        return directory.resolve(hash(site.getUrl()) + "-" + site.getId() + ".log");
+    }
+
+    private static int siteIdOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.length() - ".log".length()));
+    }
+
+    private static String hash(String siteUrl) {
+        return ContentHash.of(siteUrl).substring(0, 16);
+    }
+}
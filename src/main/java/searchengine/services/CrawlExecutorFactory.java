@@ -0,0 +1,45 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import searchengine.config.Site;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Создает исполнитель задач обхода сайта в зависимости от indexing-settings.crawl.mode.
+ */
+@Component
+public class CrawlExecutorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlExecutorFactory.class);
+
+    private final CrawlSettings settings;
+    private final SharedCrawlScheduler sharedScheduler;
+
+    public CrawlExecutorFactory(CrawlSettings settings, SharedCrawlScheduler sharedScheduler) {
+        this.settings = settings;
+        this.sharedScheduler = sharedScheduler;
+    }
+
+    public ExecutorService create(Site siteConfig) {
+        int maxInFlight = siteConfig.getMaxInFlight() != null
+                ? siteConfig.getMaxInFlight()
+                : settings.getMaxInFlightPerSite();
+        if (settings.getMode() == CrawlSettings.Mode.SHARED) {
+            int weight = siteConfig.getWeight() != null ? siteConfig.getWeight() : 1;
+            return sharedScheduler.forSite(siteConfig.getName(), weight, maxInFlight);
+        }
+        if (settings.getMode() == CrawlSettings.Mode.VIRTUAL_THREADS) {
+            logger.info("Обход сайта {} на виртуальных потоках, одновременных запросов не более {}.",
+                    siteConfig.getUrl(), maxInFlight);
+            return new BoundedVirtualThreadExecutor("crawler-" + siteConfig.getName(), maxInFlight);
+        }
+        // Задачи только загружают и сохраняют страницы, поэтому пул работает в режиме FIFO
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+}
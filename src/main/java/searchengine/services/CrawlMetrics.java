@@ -0,0 +1,173 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики обхода и индексации в Micrometer; экспортируются в Prometheus через /actuator/prometheus.
+ * Загрузка: страницы, задержка и байты по хостам и кодам ответа; хосты берутся из настроек сайтов,
+ * поэтому их число ограничено, а бакеты гистограммы задержки ограничены диапазоном ожидаемых значений.
+ * Индексация: время лемматизации.
+ * База: время и размер пакетных записей. Для каждого обходимого сайта — размер фронтира,
+ * число посещенных URL и активных задач; эти датчики снимаются по окончании обхода.
+ * Метры создаются один раз на набор тегов и кэшируются: методы вызываются на каждую страницу.
+ */
+@Component
+public class CrawlMetrics {
+
+    // Код ответа для запросов, завершившихся ошибкой ввода-вывода
+    private static final String STATUS_ERROR = "error";
+    // Диапазон бакетов гистограммы задержки загрузки
+    private static final Duration MIN_FETCH_LATENCY = Duration.ofMillis(5);
+    private static final Duration MAX_FETCH_LATENCY = Duration.ofSeconds(60);
+
+    private record HostStatus(String host, String status) {
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Integer, List<Meter>> siteGauges = new ConcurrentHashMap<>();
+    private final Map<HostStatus, Counter> fetchedPages = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fetchedBytes = new ConcurrentHashMap<>();
+    private final Map<HostStatus, Timer> fetchTimers = new ConcurrentHashMap<>();
+    // По таблице
+    private final Map<String, Timer> flushTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> batchSizes = new ConcurrentHashMap<>();
+    private final Timer lemmatizationTimer;
+    private final Counter lemmatizationWords;
+
+    public CrawlMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.lemmatizationTimer = Timer.builder("index.lemmatization")
+                .description("Лемматизация текста страницы")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.lemmatizationWords = Counter.builder("index.lemmatization.words")
+                .description("Слова, разобранные лемматизатором")
+                .register(registry);
+    }
+
+    public void pageFetched(String url, int statusCode, long nanos, long bytes) {
+        String host = hostOf(url);
+        String status = String.valueOf(statusCode);
+        fetchedPages.computeIfAbsent(new HostStatus(host, status), key -> Counter.builder("crawl.pages.fetched")
+                        .description("Загруженные страницы")
+                        .tag("host", key.host())
+                        .tag("status", key.status())
+                        .register(registry))
+                .increment();
+        fetchTimer(host, status).record(nanos, TimeUnit.NANOSECONDS);
+        if (bytes > 0) {
+            fetchedBytes.computeIfAbsent(host, key -> Counter.builder("crawl.fetch.bytes")
+                            .description("Загруженные байты тел ответов")
+                            .baseUnit("bytes")
+                            .tag("host", key)
+                            .register(registry))
+                    .increment(bytes);
+        }
+    }
+
+    public void fetchFailed(String url, long nanos) {
+        fetchTimer(hostOf(url), STATUS_ERROR).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lemmatized(long nanos, int words) {
+        lemmatizationTimer.record(nanos, TimeUnit.NANOSECONDS);
+        lemmatizationWords.increment(words);
+    }
+
+    // Пакетная запись в таблицу: table — page, index или lemma
+    public void batchFlushed(String table, int size, long nanos) {
+        flushTimers.computeIfAbsent(table, key -> Timer.builder("db.batch.flush")
+                        .description("Время записи пакета")
+                        .tag("table", key)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        batchSizes.computeIfAbsent(table, key -> DistributionSummary.builder("db.batch.size")
+                        .description("Строк в пакете")
+                        .tag("table", key)
+                        .register(registry))
+                .record(size);
+    }
+
+    // Датчик общей очереди (записи страниц, индексации); объект удерживается слабой ссылкой
+    public <T> void queueGauge(String name, T queueOwner, ToDoubleFunction<T> size) {
+        Gauge.builder(name, queueOwner, size)
+                .description("Элементов в очереди")
+                .register(registry);
+    }
+
+    // Датчики обходимого сайта; снимаются вызовом crawlFinished
+    public void crawlStarted(SiteCrawlContext crawl, ExecutorService executor) {
+        String site = crawl.getSite().getUrl();
+        List<Meter> gauges = List.of(
+                Gauge.builder("crawl.frontier.size", crawl, context -> context.getPending().get())
+                        .description("URL в очереди и в обработке")
+                        .tag("site", site)
+                        .register(registry),
+                Gauge.builder("crawl.visited.size", crawl, context -> context.getVisitedUrls().size())
+                        .description("Посещенные URL")
+                        .tag("site", site)
+                        .register(registry),
+                Gauge.builder("crawl.workers.active", executor, CrawlMetrics::activeWorkers)
+                        .description("Задачи обхода, выполняющиеся сейчас")
+                        .tag("site", site)
+                        .register(registry));
+        siteGauges.put(crawl.getSite().getId(), gauges);
+    }
+
+    public void crawlFinished(int siteId) {
+        List<Meter> gauges = siteGauges.remove(siteId);
+        if (gauges != null) {
+            gauges.forEach(registry::remove);
+        }
+    }
+
+    private Timer fetchTimer(String host, String status) {
+        return fetchTimers.computeIfAbsent(new HostStatus(host, status), key -> Timer.builder("crawl.fetch.latency")
+                .description("Время запроса страницы до получения тела")
+                .tag("host", key.host())
+                .tag("status", key.status())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_FETCH_LATENCY)
+                .maximumExpectedValue(MAX_FETCH_LATENCY)
+                .register(registry));
+    }
+
+    private static double activeWorkers(ExecutorService executor) {
+        if (executor instanceof SharedCrawlScheduler.SiteExecutor shared) {
+            return shared.getInFlight();
+        }
+        if (executor instanceof BoundedVirtualThreadExecutor bounded) {
+            return bounded.getInFlight();
+        }
+        if (executor instanceof ForkJoinPool pool) {
+            return pool.getActiveThreadCount();
+        }
+        return Double.NaN;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : "unknown";
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+}
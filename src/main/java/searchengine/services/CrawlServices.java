@@ -0,0 +1,41 @@
+package searchengine.services;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import searchengine.repository.PageRepository;
+
+/**
+ * Общие для всех обходов сайтов компоненты, которыми пользуются задачи {@link PageCrawler}.
+ */
+@Getter
+@Component
+public class CrawlServices {
+
+    private final PagePathRegistry pathRegistry;
+    private final PageWriter pageWriter;
+    private final PageFetcher pageFetcher;
+    private final HostScheduler hostScheduler;
+    private final PageRepository pageRepository;
+    private final PageContents pageContents;
+    private final CrawlMetrics metrics;
+    private final SiteDiscovery siteDiscovery;
+    private final UrlCanonicalizerFactory canonicalizerFactory;
+    private final NearDuplicateIndexFactory nearDuplicateIndexFactory;
+
+    public CrawlServices(PagePathRegistry pathRegistry, PageWriter pageWriter, PageFetcher pageFetcher,
+                         HostScheduler hostScheduler, PageRepository pageRepository, PageContents pageContents,
+                         CrawlMetrics metrics, SiteDiscovery siteDiscovery,
+                         UrlCanonicalizerFactory canonicalizerFactory,
+                         NearDuplicateIndexFactory nearDuplicateIndexFactory) {
+        this.pathRegistry = pathRegistry;
+        this.pageWriter = pageWriter;
+        this.pageFetcher = pageFetcher;
+        this.hostScheduler = hostScheduler;
+        this.pageRepository = pageRepository;
+        this.pageContents = pageContents;
+        this.metrics = metrics;
+        this.siteDiscovery = siteDiscovery;
+        this.canonicalizerFactory = canonicalizerFactory;
+        this.nearDuplicateIndexFactory = nearDuplicateIndexFactory;
+    }
+}
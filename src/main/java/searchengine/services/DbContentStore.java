@@ -0,0 +1,114 @@
+package searchengine.services;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сжатое содержимое в таблице page_content. Ссылка имеет вид {@code db:<id>}.
+ * Запись выполняется тем же JdbcTemplate, что и запись страниц, поэтому попадает в их транзакцию.
+ */
+class DbContentStore implements ContentStore {
+
+    private static final String PREFIX = "db:";
+    private static final String INSERT_SQL = "INSERT INTO page_content (site_id, html, text) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final int compressionLevel;
+
+    DbContentStore(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate, int compressionLevel) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public List<String> write(List<NewContent> contents) {
+        List<byte[][]> compressed = contents.stream()
+                .map(content -> new byte[][]{
+                        ContentCodec.compress(content.html(), compressionLevel),
+                        ContentCodec.compress(content.text(), compressionLevel)})
+                .toList();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setInt(1, contents.get(i).siteId());
+                        ps.setBytes(2, compressed.get(i)[0]);
+                        ps.setBytes(3, compressed.get(i)[1]);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return contents.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != contents.size()) {
+            throw new IllegalStateException("Получено " + keys.size() + " ключей для " + contents.size() + " страниц");
+        }
+        List<String> refs = new ArrayList<>(keys.size());
+        for (Map<String, Object> key : keys) {
+            refs.add(PREFIX + ((Number) key.values().iterator().next()).longValue());
+        }
+        return refs;
+    }
+
+    @Override
+    public StoredContent read(String ref) {
+        return jdbcTemplate.query("SELECT html, text FROM page_content WHERE id = ?",
+                rs -> rs.next()
+                        ? new StoredContent(ContentCodec.decompress(rs.getBytes(1)), ContentCodec.decompress(rs.getBytes(2)))
+                        : new StoredContent("", ""),
+                idOf(ref));
+    }
+
+    @Override
+    public Map<String, String> readTexts(Collection<String> refs) {
+        Map<String, String> texts = new HashMap<>();
+        List<Long> ids = refs.stream().filter(ref -> ref.startsWith(PREFIX)).map(DbContentStore::idOf).toList();
+        if (!ids.isEmpty()) {
+            namedJdbcTemplate.query("SELECT id, text FROM page_content WHERE id IN (:ids)", Map.of("ids", ids),
+                    rs -> {
+                        texts.put(PREFIX + rs.getLong(1), ContentCodec.decompress(rs.getBytes(2)));
+                    });
+        }
+        return texts;
+    }
+
+    @Override
+    public void delete(Collection<String> refs) {
+        List<Long> ids = refs.stream().filter(ref -> ref.startsWith(PREFIX)).map(DbContentStore::idOf).toList();
+        if (!ids.isEmpty()) {
+            namedJdbcTemplate.update("DELETE FROM page_content WHERE id IN (:ids)", Map.of("ids", ids));
+        }
+    }
+
+    @Override
+    public void deleteSite(int siteId) {
+        // Порциями, как и остальные данные сайта
+        while (jdbcTemplate.update("DELETE FROM page_content WHERE site_id = ? LIMIT 1000", siteId) > 0) {
+            // продолжаем, пока есть строки
+        }
+    }
+
+    private static long idOf(String ref) {
+        return Long.parseLong(ref.substring(PREFIX.length()));
+    }
+}
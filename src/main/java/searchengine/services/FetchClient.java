@@ -0,0 +1,35 @@
+package searchengine.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * HTTP-клиент, которым {@link PageFetcher} выполняет запросы. Ответ возвращается после
+ * получения статуса и заголовков; тело читается из {@link Response#body()} уже распакованным.
+ * Ответ нужно закрыть, чтобы соединение вернулось в пул.
+ */
+public interface FetchClient extends Closeable {
+
+    Response execute(String url, String method, Map<String, String> headers) throws IOException;
+
+    @Override
+    default void close() {
+    }
+
+    interface Response extends Closeable {
+
+        // Итоговый URL после перенаправлений
+        String url();
+
+        int statusCode();
+
+        String header(String name);
+
+        InputStream body() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+}
@@ -0,0 +1,32 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Ответ на запрос страницы. Для ответа 304 тело отсутствует; для пропущенного тела
+ * skipReason объясняет, почему оно не загружалось.
+ * Кодировка берется из Content-Type, а если она не указана, Jsoup определяет ее по BOM и meta.
+ */
+public record FetchResult(String url, int statusCode, String contentType, byte[] body, String charset,
+                          String etag, String lastModified, String skipReason) {
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    public boolean isHtml() {
+        return body != null && PageFetcher.isHtml(contentType);
+    }
+
+    public boolean isSkipped() {
+        return skipReason != null;
+    }
+
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body == null ? new byte[0] : body), charset, url);
+    }
+}
@@ -0,0 +1,300 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Сжатое содержимое в файлах-сегментах по сайтам: {@code <каталог>/site-<id>/<номер>.seg}.
+ * Запись только дописывает текущий сегмент; запись — заголовок из длин HTML и текста и их сжатые байты.
+ * Ссылка {@code file:<сайт>:<сегмент>:<смещение>:<длина>}. Чтение идет через отображение сегмента
+ * в память, поэтому не копирует файл в кучу. Освобожденные записи учитываются в файле
+ * {@code <номер>.dead} рядом с сегментом; сегменты с большой долей освобожденных байт
+ * уплотняет {@link PageContents}, переписывая живые записи в текущий сегмент.
+ */
+class FileSegmentContentStore implements ContentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSegmentContentStore.class);
+
+    private static final String PREFIX = "file:";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DEAD_SUFFIX = ".dead";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int compressionLevel;
+    private final Map<Integer, Segment> activeSegments = new ConcurrentHashMap<>();
+    private final Map<Path, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+
+    FileSegmentContentStore(String directory, int segmentSizeMb, int compressionLevel) {
+        this.directory = Paths.get(directory);
+        // Сегмент отображается в память одним буфером, поэтому он меньше 2 ГБ
+        this.segmentSize = Math.min(segmentSizeMb, 2047) * 1024L * 1024L;
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public synchronized List<String> write(List<NewContent> contents) {
+        List<String> refs = new ArrayList<>(contents.size());
+        List<Segment> touched = new ArrayList<>();
+        try {
+            for (NewContent content : contents) {
+                byte[] html = ContentCodec.compress(content.html(), compressionLevel);
+                byte[] text = ContentCodec.compress(content.text(), compressionLevel);
+                ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + html.length + text.length);
+                record.putInt(html.length).putInt(text.length).put(html).put(text).flip();
+
+                Segment segment = segmentFor(content.siteId(), record.remaining());
+                long offset = segment.channel.size();
+                while (record.hasRemaining()) {
+                    segment.channel.write(record, offset + record.position());
+                }
+                refs.add(PREFIX + content.siteId() + ":" + segment.number + ":" + offset + ":" + record.limit());
+                if (!touched.contains(segment)) {
+                    touched.add(segment);
+                }
+            }
+            // Строки page фиксируются после записи файла, поэтому данные сбрасываются на диск заранее
+            for (Segment segment : touched) {
+                if (segment.channel.isOpen()) {
+                    segment.channel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return refs;
+    }
+
+    @Override
+    public StoredContent read(String ref) {
+        String[] parts = ref.substring(PREFIX.length()).split(":");
+        Path file = segmentFile(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        long offset = Long.parseLong(parts[2]);
+        int length = Integer.parseInt(parts[3]);
+
+        ByteBuffer record = map(file, offset + length).duplicate();
+        record.position((int) offset).limit((int) (offset + length));
+        byte[] html = new byte[record.getInt()];
+        byte[] text = new byte[record.getInt()];
+        record.get(html).get(text);
+        return new StoredContent(ContentCodec.decompress(html), ContentCodec.decompress(text));
+    }
+
+    // Записи остаются в сегменте до уплотнения, здесь только растет счетчик освобожденных байт
+    @Override
+    public synchronized void delete(Collection<String> refs) {
+        Map<Path, Long> deadBytes = new HashMap<>();
+        for (String ref : refs) {
+            if (ref == null || !ref.startsWith(PREFIX)) {
+                continue;
+            }
+            String[] parts = ref.substring(PREFIX.length()).split(":");
+            deadBytes.merge(segmentFile(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])),
+                    Long.parseLong(parts[3]), Long::sum);
+        }
+        deadBytes.forEach((file, bytes) -> {
+            if (Files.exists(file)) {
+                writeDeadBytes(file, readDeadBytes(file) + bytes);
+            }
+        });
+    }
+
+    /**
+     * Сегменты, в которых освобождено не меньше minDeadRatio байт. Текущий сегмент сайта
+     * и сегмент с наибольшим номером (его продолжит запись после перезапуска) не уплотняются.
+     */
+    synchronized List<SegmentId> segmentsToCompact(double minDeadRatio) {
+        List<SegmentId> result = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (Stream<Path> siteDirectories = Files.list(directory)) {
+            for (Path siteDirectory : siteDirectories.filter(Files::isDirectory).toList()) {
+                String name = siteDirectory.getFileName().toString();
+                if (!name.startsWith("site-")) {
+                    continue;
+                }
+                int siteId = Integer.parseInt(name.substring("site-".length()));
+                List<Integer> numbers = segmentNumbers(siteDirectory);
+                Segment active = activeSegments.get(siteId);
+                for (int number : numbers) {
+                    if (number == numbers.get(numbers.size() - 1) || active != null && active.number == number) {
+                        continue;
+                    }
+                    Path file = segmentFile(siteId, number);
+                    long size = Files.size(file);
+                    if (size == 0 || readDeadBytes(file) >= size * minDeadRatio) {
+                        result.add(new SegmentId(siteId, number));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Сегменты содержимого не просмотрены: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    // Все записи сегмента перенесены: он остается кандидатом, пока на него ссылаются строки page
+    synchronized void markDead(SegmentId segment) {
+        Path file = segmentFile(segment.siteId, segment.number);
+        try {
+            writeDeadBytes(file, Files.size(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Удаляет сегмент, на который больше не ссылаются строки page
+    synchronized void deleteSegment(SegmentId segment) {
+        Segment active = activeSegments.get(segment.siteId);
+        if (active != null && active.number == segment.number) {
+            throw new IllegalStateException("Текущий сегмент " + segment.number + " сайта " + segment.siteId + " не удаляется");
+        }
+        Path file = segmentFile(segment.siteId, segment.number);
+        mapped.remove(file);
+        try {
+            Files.deleteIfExists(deadFile(file));
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void deleteSite(int siteId) {
+        Segment segment = activeSegments.remove(siteId);
+        if (segment != null) {
+            closeQuietly(segment);
+        }
+        Path siteDirectory = directory.resolve("site-" + siteId);
+        mapped.keySet().removeIf(file -> file.startsWith(siteDirectory));
+        if (!Files.isDirectory(siteDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(siteDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Сегменты содержимого сайта {} не удалены: {}", siteId, e.getMessage());
+        }
+    }
+
+    // Текущий сегмент сайта; заполненный сегмент закрывается и начинается следующий
+    private Segment segmentFor(int siteId, int recordSize) throws IOException {
+        Segment segment = activeSegments.get(siteId);
+        if (segment == null) {
+            segment = openLast(siteId);
+        } else if (segment.channel.size() > 0 && segment.channel.size() + recordSize > segmentSize) {
+            // Записи пакета в закрываемом сегменте сбрасываются на диск до закрытия
+            segment.channel.force(false);
+            closeQuietly(segment);
+            segment = open(siteId, segment.number + 1);
+        }
+        activeSegments.put(siteId, segment);
+        return segment;
+    }
+
+    private Segment openLast(int siteId) throws IOException {
+        Path siteDirectory = Files.createDirectories(directory.resolve("site-" + siteId));
+        List<Integer> numbers = segmentNumbers(siteDirectory);
+        return open(siteId, numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1));
+    }
+
+    // Номера сегментов сайта по возрастанию
+    private static List<Integer> segmentNumbers(Path siteDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(siteDirectory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Segment open(int siteId, int number) throws IOException {
+        FileChannel channel = FileChannel.open(segmentFile(siteId, number),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(number, channel);
+    }
+
+    // Отображение сегмента в память; дописанный после отображения сегмент отображается заново
+    private MappedByteBuffer map(Path file, long requiredSize) {
+        MappedByteBuffer buffer = mapped.get(file);
+        if (buffer != null && buffer.capacity() >= requiredSize) {
+            return buffer;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.put(file, buffer);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentFile(int siteId, int number) {
+        return directory.resolve("site-" + siteId).resolve(String.format("%05d", number) + SEGMENT_SUFFIX);
+    }
+
+    private static Path deadFile(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return segmentFile.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + DEAD_SUFFIX);
+    }
+
+    private static long readDeadBytes(Path segmentFile) {
+        Path file = deadFile(segmentFile);
+        try {
+            return Files.exists(file) ? Long.parseLong(Files.readString(file).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            logger.debug("Счетчик освобожденных байт {} не прочитан: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void writeDeadBytes(Path segmentFile, long bytes) {
+        try {
+            Files.writeString(deadFile(segmentFile), Long.toString(bytes));
+        } catch (IOException e) {
+            logger.warn("Счетчик освобожденных байт сегмента {} не записан: {}", segmentFile, e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            logger.debug("Ошибка закрытия сегмента {}: {}", segment.number, e.getMessage());
+        }
+    }
+
+    private record Segment(int number, FileChannel channel) {
+    }
+
+    record SegmentId(int siteId, int number) {
+
+        // Начало ссылок на записи сегмента, для поиска строк page по content_ref
+        String refPrefix() {
+            return PREFIX + siteId + ":" + number + ":";
+        }
+    }
+}
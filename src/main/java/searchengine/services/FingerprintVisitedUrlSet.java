@@ -0,0 +1,195 @@
+package searchengine.services;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Компактное множество посещенных URL для больших сайтов: хранятся не сами URL,
+ * а их 64-битные отпечатки. Фильтр Блума хранится вне кучи и обновляется через CAS;
+ * он отсекает заведомо новые URL. Если фильтр отвечает "возможно, был", решение принимает
+ * множество отпечатков, поэтому ложное срабатывание фильтра стоит лишь лишней проверки.
+ * Множество не точное: новый URL с тем же отпечатком, что у одного из n посещенных,
+ * считается посещенным и пропускается. Вероятность этого для нового URL — около n / 2^64
+ * (при миллиарде URL порядка 5e-11), ее и возвращает {@link #falsePositiveRate()}.
+ */
+public class FingerprintVisitedUrlSet implements VisitedUrlSet {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int STRIPES = 64;
+
+    private final ByteBuffer bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final FingerprintStripe[] stripes = new FingerprintStripe[STRIPES];
+    private final AtomicLong size = new AtomicLong();
+
+    public FingerprintVisitedUrlSet(long expectedUrls, double falsePositiveRate) {
+        long n = Math.max(1, expectedUrls);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        long words = Math.min((m + 63) / 64, (Integer.MAX_VALUE - 8) / 8);
+        this.bitCount = words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.bits = ByteBuffer.allocateDirect((int) (words * 8) + 8).alignedSlice(8).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new FingerprintStripe();
+        }
+    }
+
+    @Override
+    public boolean add(String normalizedUrl) {
+        long h1 = hash(normalizedUrl);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+
+        // Один и тот же URL всегда попадает в одну полосу, поэтому его повторные вставки упорядочены,
+        // а биты фильтра разные полосы устанавливают параллельно через CAS
+        FingerprintStripe stripe = stripes[(int) (h2 >>> 58)];
+        boolean added;
+        synchronized (stripe) {
+            boolean maybeContained = true;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if (setBit(bit)) {
+                    maybeContained = false;
+                }
+            }
+            // Если фильтр гарантирует отсутствие URL, поиск отпечатка можно пропустить
+            added = maybeContained ? stripe.add(h1) : stripe.insertAbsent(h1);
+        }
+        if (added) {
+            size.incrementAndGet();
+        }
+        return added;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long memoryBytes() {
+        long fingerprints = 0;
+        for (FingerprintStripe stripe : stripes) {
+            synchronized (stripe) {
+                fingerprints += stripe.capacity() * 8L;
+            }
+        }
+        return bitCount / 8 + fingerprints;
+    }
+
+    // Вероятность, что новый URL совпадет отпечатком с одним из посещенных и будет пропущен
+    @Override
+    public double falsePositiveRate() {
+        return size() / 0x1p64;
+    }
+
+    // Доля ложных срабатываний фильтра Блума при текущем заполнении: лишние поиски отпечатка
+    public double filterFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * size() / bitCount), hashCount);
+    }
+
+    @Override
+    public String describe() {
+        return String.format("%s, ложные срабатывания фильтра Блума %.6f",
+                VisitedUrlSet.super.describe(), filterFalsePositiveRate());
+    }
+
+    // Возвращает true, если бит был установлен этим вызовом
+    private boolean setBit(long bit) {
+        int offset = (int) (bit >>> 6) << 3;
+        long mask = 1L << (bit & 63);
+        while (true) {
+            long word = (long) LONGS.getVolatile(bits, offset);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (LONGS.compareAndSet(bits, offset, word, word | mask)) {
+                return true;
+            }
+        }
+    }
+
+    private static long hash(String value) {
+        // FNV-1a по символам с финальным перемешиванием
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Хеш-таблица с открытой адресацией для 64-битных отпечатков; 0 обозначает пустую ячейку.
+    // Совпадение отпечатков разных URL неотличимо от повторной вставки
+    private static class FingerprintStripe {
+        private long[] table = new long[1024];
+        private int count;
+        private boolean hasZero;
+
+        boolean add(long fingerprint) {
+            if (fingerprint == 0) {
+                if (hasZero) return false;
+                hasZero = true;
+                return true;
+            }
+            int mask = table.length - 1;
+            int i = (int) fingerprint & mask;
+            while (table[i] != 0) {
+                if (table[i] == fingerprint) return false;
+                i = (i + 1) & mask;
+            }
+            insert(fingerprint);
+            return true;
+        }
+
+        boolean insertAbsent(long fingerprint) {
+            if (fingerprint == 0) {
+                hasZero = true;
+                return true;
+            }
+            insert(fingerprint);
+            return true;
+        }
+
+        int capacity() {
+            return table.length;
+        }
+
+        private void insert(long fingerprint) {
+            if ((count + 1) * 2 > table.length) {
+                resize();
+            }
+            int mask = table.length - 1;
+            int i = (int) fingerprint & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = fingerprint;
+            count++;
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            int mask = table.length - 1;
+            for (long fingerprint : old) {
+                if (fingerprint == 0) continue;
+                int i = (int) fingerprint & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = fingerprint;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вежливость к хостам без ожидания в потоках обхода. Задача, готовая к запросу, проверяет слот
+ * своего хоста: если он наступил, слот резервируется и запрос выполняется сразу. Иначе задача
+ * ставится в очередь хоста и возвращает поток исполнителю, а таймер в свой срок передает ее
+ * исполнителю снова, уже с выданным слотом. У хоста не больше одной выданной задачи: следующая
+ * выдается, когда предыдущая начала запрос, поэтому задачи, простоявшие в очереди исполнителя,
+ * не уходят к хосту пачкой, а слоты не расписываются далеко вперед.
+ */
+@Component
+public class HostScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostScheduler.class);
+
+    // Выданная задача, не начавшая запрос за это время, считается потерянной, и слот выдается следующей
+    private static final long GRANT_LEASE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private record Parked(AbortableTask task, Executor executor) {
+    }
+
+    // Состояние хоста; все поля меняются под монитором объекта
+    private static class Host {
+        private final Deque<Parked> waiting = new ArrayDeque<>();
+        private long nextSlot = System.nanoTime();
+        private AbortableTask granted;
+        private Executor grantedExecutor;
+        private long grantedAt;
+        private ScheduledFuture<?> timer;
+    }
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor timer;
+
+    public HostScheduler() {
+        timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "host-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Резервирует слот хоста URL для запроса задачи task. Возвращает false, если слот еще не наступил:
+     * задача поставлена в очередь хоста и будет снова передана executor; поток ее не ждет.
+     */
+    public boolean acquire(String url, long intervalMs, AbortableTask task, Executor executor) {
+        Host host = hosts.computeIfAbsent(hostOf(url), h -> new Host());
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        synchronized (host) {
+            long now = System.nanoTime();
+            if (host.granted == task) {
+                // Задача пришла по выданному слоту: следующий слот отсчитывается от фактического запроса
+                clearGrant(host);
+                host.nextSlot = now + intervalNanos;
+                arm(host, intervalNanos);
+                return true;
+            }
+            if (host.granted == null && host.waiting.isEmpty() && host.nextSlot - now <= 0) {
+                host.nextSlot = now + intervalNanos;
+                return true;
+            }
+            host.waiting.add(new Parked(task, executor));
+            if (host.granted == null && host.timer == null) {
+                arm(host, host.nextSlot - now);
+            }
+            return false;
+        }
+    }
+
+    // Снимает отложенные задачи исполнителя остановленного обхода; у них выполняются завершающие действия
+    public void cancel(Executor executor) {
+        List<AbortableTask> cancelled = new ArrayList<>();
+        for (Host host : hosts.values()) {
+            synchronized (host) {
+                host.waiting.removeIf(parked -> parked.executor() == executor && cancelled.add(parked.task()));
+                if (host.grantedExecutor == executor) {
+                    clearGrant(host);
+                    arm(host, host.nextSlot - System.nanoTime());
+                }
+            }
+        }
+        cancelled.forEach(AbortableTask::abort);
+    }
+
+    // Сколько задач ожидают своего слота
+    public int getWaitingCount() {
+        int count = 0;
+        for (Host host : hosts.values()) {
+            synchronized (host) {
+                count += host.waiting.size();
+            }
+        }
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    // Выдает слот первой задаче очереди хоста и передает ее исполнителю
+    private void dispatchNext(Host host) {
+        Parked next;
+        synchronized (host) {
+            host.timer = null;
+            long now = System.nanoTime();
+            if (host.granted != null) {
+                long held = now - host.grantedAt;
+                if (held < GRANT_LEASE_NANOS) {
+                    arm(host, GRANT_LEASE_NANOS - held);
+                    return;
+                }
+                logger.debug("Задача, получившая слот хоста, не начала запрос за {} с; слот выдается следующей.",
+                        TimeUnit.NANOSECONDS.toSeconds(held));
+                clearGrant(host);
+            }
+            if (host.nextSlot - now > 0) {
+                arm(host, host.nextSlot - now);
+                return;
+            }
+            next = host.waiting.poll();
+            if (next == null) {
+                return;
+            }
+            host.granted = next.task();
+            host.grantedExecutor = next.executor();
+            host.grantedAt = now;
+            // Если задача так и не начнет запрос, очередь хоста продолжится по истечении срока
+            arm(host, GRANT_LEASE_NANOS);
+        }
+        try {
+            next.executor().execute(next.task());
+        } catch (RejectedExecutionException e) {
+            synchronized (host) {
+                if (host.granted == next.task()) {
+                    clearGrant(host);
+                    arm(host, 0);
+                }
+            }
+            next.task().abort();
+        }
+    }
+
+    // Вызывается под монитором хоста
+    private void arm(Host host, long delayNanos) {
+        if (host.timer != null) {
+            host.timer.cancel(false);
+            host.timer = null;
+        }
+        if (host.granted == null && host.waiting.isEmpty()) {
+            return;
+        }
+        try {
+            host.timer = timer.schedule(() -> dispatchNext(host), Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Таймер хостов остановлен, задачи в очереди хоста не будут запущены.");
+        }
+    }
+
+    // Вызывается под монитором хоста
+    private static void clearGrant(Host host) {
+        host.granted = null;
+        host.grantedExecutor = null;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Не удалось определить хост URL {}: {}", url, e.getMessage());
+            return url;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Запросы через общий {@link HttpClient}: соединения с хостом переиспользуются (keep-alive),
+ * с серверами HTTP/2 запросы мультиплексируются в одном соединении, поэтому TCP- и TLS-рукопожатия
+ * выполняются один раз на множество запросов. Тела в gzip и deflate распаковываются при чтении.
+ * Число одновременных запросов к хосту ограничено max-connections-per-host; разрешение
+ * удерживается до закрытия ответа. Таймаут запроса ограничивает весь обмен вместе с чтением
+ * тела: по истечении срока поток тела закрывается, и чтение завершается {@link HttpTimeoutException}.
+ */
+public class HttpClientFetchClient implements FetchClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientFetchClient.class);
+
+    private final HttpClient client;
+    private final String userAgent;
+    private final Duration requestTimeout;
+    private final int maxConnectionsPerHost;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor deadlines;
+
+    public HttpClientFetchClient(String userAgent, int connectTimeoutMs, int requestTimeoutMs,
+                                 int maxConnectionsPerHost) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.userAgent = userAgent;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        this.deadlines = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "fetch-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlines.setRemoveOnCancelPolicy(true);
+        logger.info("HTTP-клиент: HTTP/2 с откатом на HTTP/1.1, не более {} запросов к хосту одновременно.",
+                this.maxConnectionsPerHost);
+    }
+
+    @Override
+    public Response execute(String url, String method, Map<String, String> headers) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректный URL: " + url, e);
+        }
+        long deadline = System.nanoTime() + requestTimeout.toNanos();
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("User-Agent", userAgent)
+                .header("Accept-Encoding", "gzip, deflate")
+                .method(method, HttpRequest.BodyPublishers.noBody());
+        headers.forEach(request::header);
+
+        Semaphore permits = hostPermits.computeIfAbsent(String.valueOf(uri.getHost()).toLowerCase(Locale.ROOT),
+                host -> new Semaphore(maxConnectionsPerHost));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание соединения с " + uri.getHost() + " прервано");
+        }
+        try {
+            HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            return new PooledResponse(response, permits, deadlines, deadline - System.nanoTime());
+        } catch (InterruptedException e) {
+            permits.release();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запрос " + url + " прерван");
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+        deadlines.shutdownNow();
+    }
+
+    private static final class PooledResponse implements Response {
+
+        private final HttpResponse<InputStream> response;
+        private final Semaphore permits;
+        private final ScheduledFuture<?> watchdog;
+        private volatile boolean expired;
+        private InputStream body;
+        private boolean closed;
+
+        private PooledResponse(HttpResponse<InputStream> response, Semaphore permits,
+                               ScheduledExecutorService deadlines, long remainingNanos) {
+            this.response = response;
+            this.permits = permits;
+            // Закрытие потока прерывает заблокированное чтение тела
+            this.watchdog = deadlines.schedule(() -> {
+                expired = true;
+                try {
+                    response.body().close();
+                } catch (IOException e) {
+                    logger.debug("Ошибка закрытия тела ответа {}: {}", response.uri(), e.getMessage());
+                }
+            }, Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String url() {
+            return response.uri().toString();
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String header(String name) {
+            return response.headers().firstValue(name).orElse(null);
+        }
+
+        @Override
+        public InputStream body() throws IOException {
+            if (body == null) {
+                body = decode(new DeadlineInputStream(response.body()), header("Content-Encoding"));
+            }
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            watchdog.cancel(false);
+            try {
+                // Поток без декодера закрываем напрямую: у пустого gzip-тела нет заголовка для разбора
+                (body != null ? body : response.body()).close();
+            } finally {
+                permits.release();
+            }
+        }
+
+        // Ошибки чтения после истечения срока сообщаются как таймаут запроса
+        private final class DeadlineInputStream extends FilterInputStream {
+
+            private DeadlineInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                checkDeadline();
+                try {
+                    return super.read();
+                } catch (IOException e) {
+                    throw expired ? timeout(e) : e;
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                checkDeadline();
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    throw expired ? timeout(e) : e;
+                }
+            }
+
+            private void checkDeadline() throws HttpTimeoutException {
+                if (expired) {
+                    throw timeout(null);
+                }
+            }
+
+            private HttpTimeoutException timeout(IOException cause) {
+                HttpTimeoutException e = new HttpTimeoutException("Тело ответа " + response.uri() + " не получено за отведенное время");
+                if (cause != null) {
+                    e.initCause(cause);
+                }
+                return e;
+            }
+        }
+
+        private static InputStream decode(InputStream stream, String encoding) throws IOException {
+            if (encoding == null) {
+                return stream;
+            }
+            return switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+                case "gzip", "x-gzip" -> new GZIPInputStream(stream, 8192);
+                case "deflate" -> new InflaterInputStream(stream);
+                default -> stream;
+            };
+        }
+    }
+}
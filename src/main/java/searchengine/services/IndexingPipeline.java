@@ -0,0 +1,159 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexingPipelineSettings;
+import searchengine.model.Page;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отдельная стадия индексации: краулер кладет сохраненные страницы в ограниченную очередь,
+ * а собственный пул потоков лемматизирует их и записывает lemma/index.
+ * Заполненная очередь притормаживает краулер, пока индексатор не освободит место.
+ * Для измененной при повторном обходе страницы задача сначала снимает ее старые строки index.
+ */
+@Component
+public class IndexingPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexingPipeline.class);
+
+    private final IndexingPipelineSettings settings;
+    private final PageIndexer pageIndexer;
+
+    private final SitePendingTracker pending = new SitePendingTracker();
+    private volatile Stage stage;
+
+    public IndexingPipeline(IndexingPipelineSettings settings, PageIndexer pageIndexer, CrawlMetrics metrics) {
+        this.settings = settings;
+        this.pageIndexer = pageIndexer;
+        metrics.queueGauge("index.pipeline.queue", this, IndexingPipeline::getQueueSize);
+    }
+
+    public synchronized void start() {
+        if (stage != null && stage.accepting) {
+            return;
+        }
+        stage = new Stage(settings.getQueueCapacity(), settings.getParallelism());
+        logger.info("Стадия индексации запущена: потоков {}, емкость очереди {}.",
+                settings.getParallelism(), settings.getQueueCapacity());
+    }
+
+    // Передает страницу на индексацию; блокирует вызывающий поток, пока в очереди нет места
+    public void submit(Page page) throws InterruptedException {
+        submit(page, false, true);
+    }
+
+    // removeOld снимает прежние строки index страницы, indexNew индексирует ее текущее содержимое
+    public void submit(Page page, boolean removeOld, boolean indexNew) throws InterruptedException {
+        Stage current = stage;
+        if (current == null || !current.accepting) {
+            logger.debug("Стадия индексации остановлена, страница {} не будет проиндексирована.", page.getPath());
+            return;
+        }
+        IndexTask task = new IndexTask(page, removeOld, indexNew);
+        pending.increment(page.getSite().getId());
+        if (!current.queue.offer(task)) {
+            logger.debug("Очередь индексации заполнена, краулер ожидает: {}", page.getPath());
+            try {
+                current.queue.put(task);
+            } catch (InterruptedException e) {
+                complete(page);
+                throw e;
+            }
+        }
+    }
+
+    // Ждет, пока все переданные страницы сайта будут проиндексированы
+    public void awaitSite(int siteId) throws InterruptedException {
+        pending.await(siteId, this::isTerminated);
+    }
+
+    public int getQueueSize() {
+        Stage current = stage;
+        return current == null ? 0 : current.queue.size();
+    }
+
+    // Прекращает прием страниц; потоки дорабатывают уже поставленные в очередь страницы и завершаются
+    public synchronized void stop() {
+        if (stage == null || !stage.accepting) {
+            return;
+        }
+        stage.accepting = false;
+        stage.workers.shutdown();
+        logger.info("Стадия индексации останавливается, в очереди {} страниц.", stage.queue.size());
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        Stage current = stage;
+        if (current == null) {
+            return;
+        }
+        if (!current.workers.awaitTermination(settings.getDrainTimeoutSeconds(), TimeUnit.SECONDS)) {
+            logger.error("Очередь индексации не обработана за {} с, оставшиеся страницы отброшены.",
+                    settings.getDrainTimeoutSeconds());
+            current.workers.shutdownNow();
+        }
+    }
+
+    private boolean isTerminated() {
+        Stage current = stage;
+        return current == null || current.workers.isTerminated();
+    }
+
+    private void complete(Page page) {
+        pending.decrement(page.getSite().getId());
+    }
+
+    private record IndexTask(Page page, boolean removeOld, boolean indexNew) {
+    }
+
+    // Очередь и пул потоков одного запуска индексации
+    private class Stage {
+        private final BlockingQueue<IndexTask> queue;
+        private final ExecutorService workers;
+        private volatile boolean accepting = true;
+
+        Stage(int queueCapacity, int parallelism) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            AtomicInteger counter = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(parallelism, task -> {
+                Thread thread = new Thread(task, "page-indexer-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < parallelism; i++) {
+                workers.submit(this::run);
+            }
+        }
+
+        private void run() {
+            while (accepting || !queue.isEmpty()) {
+                IndexTask task;
+                try {
+                    task = queue.poll(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (task == null) continue;
+
+                Page page = task.page();
+                try {
+                    if (task.removeOld()) {
+                        pageIndexer.removeFromIndex(page);
+                    }
+                    if (task.indexNew()) {
+                        pageIndexer.index(page);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Ошибка индексации страницы {}: {}", page.getPath(), e.getMessage());
+                } finally {
+                    complete(page);
+                }
+            }
+        }
+    }
+}
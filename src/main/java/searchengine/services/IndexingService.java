@@ -1,20 +1,28 @@
 package searchengine.services;
 
+import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlSettings;
+import searchengine.config.PolitenessSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.PageSnapshot;
 import searchengine.model.IndexingStatus;
 import searchengine.model.Page;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -25,15 +33,49 @@ public class IndexingService {
     private final SitesList sitesList;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
+    private final IndexingPipeline indexingPipeline;
+    private final VisitedUrlSetFactory visitedUrlSetFactory;
+    private final PolitenessSettings politenessSettings;
+    private final CrawlSettings crawlSettings;
+    private final CrawlExecutorFactory crawlExecutorFactory;
+    private final CrawlServices crawlServices;
+    private final PageWriter pageWriter;
+    private final PagePathRegistry pathRegistry;
+    private final PageIndexer pageIndexer;
+    private final LemmaDictionary lemmaDictionary;
+    private final SiteStatisticsRegistry statisticsRegistry;
+    private final SiteGenerationManager siteGenerations;
+    private final CrawlCheckpointStore checkpointStore;
+    private final TransactionTemplate transactionTemplate;
 
     private volatile boolean indexingInProgress = false;
     private ExecutorService executorService;
-    private ForkJoinPool forkJoinPool;
+    private final Set<ExecutorService> crawlExecutors = ConcurrentHashMap.newKeySet();
 
-    public IndexingService(SitesList sitesList, SiteRepository siteRepository, PageRepository pageRepository) {
+    public IndexingService(SitesList sitesList, SiteRepository siteRepository, PageRepository pageRepository,
+                           IndexingPipeline indexingPipeline, VisitedUrlSetFactory visitedUrlSetFactory,
+                           PolitenessSettings politenessSettings, CrawlSettings crawlSettings,
+                           CrawlExecutorFactory crawlExecutorFactory, CrawlServices crawlServices,
+                           PageIndexer pageIndexer, LemmaDictionary lemmaDictionary,
+                           SiteStatisticsRegistry statisticsRegistry, SiteGenerationManager siteGenerations,
+                           CrawlCheckpointStore checkpointStore, PlatformTransactionManager transactionManager) {
         this.sitesList = sitesList;
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
+        this.indexingPipeline = indexingPipeline;
+        this.visitedUrlSetFactory = visitedUrlSetFactory;
+        this.politenessSettings = politenessSettings;
+        this.crawlSettings = crawlSettings;
+        this.crawlExecutorFactory = crawlExecutorFactory;
+        this.crawlServices = crawlServices;
+        this.pageWriter = crawlServices.getPageWriter();
+        this.pathRegistry = crawlServices.getPathRegistry();
+        this.pageIndexer = pageIndexer;
+        this.lemmaDictionary = lemmaDictionary;
+        this.statisticsRegistry = statisticsRegistry;
+        this.siteGenerations = siteGenerations;
+        this.checkpointStore = checkpointStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public synchronized boolean isIndexingInProgress() {
@@ -48,6 +90,8 @@ public class IndexingService {
         indexingInProgress = true;
         logger.info("Индексация начата.");
 
+        indexingPipeline.start();
+        pageWriter.start();
         executorService = Executors.newSingleThreadExecutor();
         executorService.submit(() -> {
             try {
@@ -56,6 +100,7 @@ public class IndexingService {
                 logger.error("Ошибка во время индексации: ", e);
             } finally {
                 indexingInProgress = false;
+                finishPipeline();
                 logger.info("Индексация завершена.");
             }
         });
@@ -73,35 +118,140 @@ public class IndexingService {
         if (executorService != null) {
             executorService.shutdownNow();
         }
-        if (forkJoinPool != null) {
-            forkJoinPool.shutdownNow();
-        }
+        crawlExecutors.forEach(ExecutorService::shutdownNow);
+        // Уже принятые страницы дописываются в базу и индекс, новые не принимаются
+        pageWriter.stop();
 
         updateSitesStatusToFailed("Индексация остановлена пользователем");
     }
 
+    /**
+     * Загружает страницу и обновляет ее на месте. Если текст не изменился, запись и индекс не трогаются;
+     * иначе строки index обновляются по разнице с прежними леммами страницы. Запись страницы и разница
+     * index выполняются в одной транзакции под блокировкой строки page. Сайт, которого еще нет в базе,
+     * создается в статусе INDEXING и получает INDEXED или FAILED по итогу.
+     */
     public void indexPage(String url) {
         logger.info("Индексация отдельной страницы: {}", url);
 
         // Проверяем, находится ли URL в рамках указанных сайтов
-        if (!isUrlValid(url)) {
+        Site siteConfig = sitesList.getSites().stream()
+                .filter(site -> url.startsWith(site.getUrl()))
+                .findFirst()
+                .orElse(null);
+        if (siteConfig == null) {
             logger.error("URL {} находится за пределами разрешенных сайтов.", url);
             throw new IllegalArgumentException("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
         }
 
+        FetchResult result;
+        Document document;
+        String path;
+        try {
+            path = crawlServices.getCanonicalizerFactory().create(siteConfig).pathOf(url);
+            result = crawlServices.getPageFetcher().fetch(url);
+            document = result.isHtml() ? result.parse() : null;
+        } catch (IOException e) {
+            logger.error("Ошибка загрузки страницы {}: {}", url, e.getMessage());
+            throw new IllegalStateException("Страница недоступна: " + e.getMessage(), e);
+        }
+
+        searchengine.model.Site site = siteRepository.findByUrl(siteConfig.getUrl());
+        boolean siteCreated = site == null;
+        if (siteCreated) {
+            site = createSite(siteConfig);
+        }
         try {
-            searchengine.model.Site site = getSiteByUrl(url);
-            if (site == null) {
-                logger.error("Сайт для URL {} не найден.", url);
-                return;
+            reindexPage(site, path, url, result, document);
+            if (siteCreated) {
+                updateSiteStatus(site, IndexingStatus.INDEXED, null);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Ту же новую страницу одновременно создал другой запрос
+            if (siteCreated) {
+                updateSiteStatus(site, IndexingStatus.FAILED, e.getMessage());
             }
+            throw new IllegalStateException("Страница уже индексируется другим запросом", e);
+        } catch (RuntimeException e) {
+            if (siteCreated) {
+                updateSiteStatus(site, IndexingStatus.FAILED, e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    private void reindexPage(searchengine.model.Site site, String path, String url, FetchResult result,
+                             Document document) {
+        String content = document != null ? document.html()
+                : result.isSkipped() ? "Skipped content: " + result.contentType() + " (" + result.skipReason() + ")"
+                : "Unhandled content type: " + result.contentType();
+        String text = document != null ? document.text() : content;
+        String contentHash = ContentHash.of(text);
+        boolean indexable = document != null && result.statusCode() < 400;
+
+        Page fetched = new Page();
+        fetched.setText(text);
+        LemmaCounts lemmaCounts = pageIndexer.lemmatize(fetched, indexable);
 
-            String content = fetchPageContent(url);
-            savePageIfUnique(url, content, site);
+        PageContents pageContents = crawlServices.getPageContents();
+        List<String> storedRefs = new ArrayList<>(1);
+        PageUpdate update;
+        try {
+            update = transactionTemplate.execute(status -> {
+                Page page = pageRepository.findForUpdate(path, site.getId()).orElse(null);
+                boolean isNew = page == null;
+                if (isNew) {
+                    page = new Page();
+                    page.setSite(site);
+                    page.setPath(path);
+                } else if (page.getAliasOf() == null && page.getCode() == result.statusCode()
+                        && contentHash.equals(page.getContentHash())) {
+                    // Псевдоним почти одинаковой страницы индексируется по явному запросу, даже если текст не изменился
+                    return null;
+                }
+                page.setCode(result.statusCode());
+                page.setContent(content);
+                page.setContentType(result.contentType());
+                page.setEtag(result.etag());
+                page.setLastModified(result.lastModified());
+                page.setContentHash(contentHash);
+                page.setTitle(document != null ? document.title() : null);
+                page.setText(text);
+                page.setAliasOf(null);
+                SimHash.Fingerprint fingerprint = document != null ? SimHash.of(text) : null;
+                page.setSimhash(fingerprint != null && crawlServices.getNearDuplicateIndexFactory().accepts(fingerprint)
+                        ? fingerprint.hash() : null);
 
-        } catch (Exception e) {
-            logger.error("Ошибка индексации страницы {}: {}", url, e.getMessage());
+                // Содержимое уходит во внешнее хранилище, в строке page остается ссылка
+                String replacedRef = page.getContentRef();
+                pageContents.store(List.of(page));
+                storedRefs.add(page.getContentRef());
+                page.setContent(pageContents.columnValue(page));
+                page = pageRepository.saveAndFlush(page);
+                page.setText(text);
+                pageIndexer.reindex(page, lemmaCounts);
+                return new PageUpdate(isNew, replacedRef != null && !replacedRef.equals(page.getContentRef()) ? replacedRef : null);
+            });
+        } catch (RuntimeException e) {
+            // Откат транзакции не удаляет уже записанное содержимое, оно освобождается здесь
+            pageContents.release(storedRefs);
+            throw e;
+        }
+        if (update == null) {
+            logger.info("Страница {} не изменилась, переиндексация не нужна.", url);
+            return;
         }
+        // Замененное содержимое освобождается только после фиксации новой строки page
+        if (update.replacedRef() != null) {
+            pageContents.release(List.of(update.replacedRef()));
+        }
+        if (update.created()) {
+            statisticsRegistry.pagesAdded(site.getId(), 1);
+        }
+        logger.info("Страница {} переиндексирована.", url);
+    }
+
+    private record PageUpdate(boolean created, String replacedRef) {
     }
 
     public boolean isUrlValid(String url) {
@@ -110,18 +260,20 @@ public class IndexingService {
     }
 
 
-    private searchengine.model.Site getSiteByUrl(String url) {
-        return sitesList.getSites().stream()
-                .filter(site -> url.startsWith(site.getUrl()))
-                .map(site -> siteRepository.findByUrl(site.getUrl()))
-                .findFirst()
-                .orElse(null);
+    // Сайт, впервые встреченный при индексации отдельной страницы: проиндексированным он станет по ее итогу
+    private searchengine.model.Site createSite(Site siteConfig) {
+        searchengine.model.Site site = new searchengine.model.Site();
+        site.setName(siteConfig.getName());
+        site.setUrl(siteConfig.getUrl());
+        site.setGeneration(siteRepository.findMaxGeneration(siteConfig.getUrl()) + 1);
+        site.setStatus(IndexingStatus.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        return siteRepository.save(site);
     }
 
-    private String fetchPageContent(String url) {
-        // Здесь может быть код для загрузки содержимого страницы через HTTP-запрос
-        logger.info("Загрузка содержимого страницы: {}", url);
-        return "Пример содержимого страницы."; // Заглушка
+    private void updateSiteStatus(searchengine.model.Site site, IndexingStatus status, String error) {
+        site.updateStatus(status, error);
+        siteRepository.save(site);
     }
 
     private void performIndexing() {
@@ -131,27 +283,47 @@ public class IndexingService {
             return;
         }
 
-        executorService = Executors.newFixedThreadPool(sites.size());
+        // Потоки сайтов только координируют обход и ждут его завершения; загрузкой занят общий пул
+        executorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("site-", 1).factory());
         try {
             for (searchengine.config.Site site : sites) {
                 executorService.submit(() -> {
                     logger.info("Индексация сайта: {} ({})", site.getName(), site.getUrl());
+                    searchengine.model.Site newSite = null;
                     try {
-                        deleteSiteData(site.getUrl());
-                        searchengine.model.Site newSite = new searchengine.model.Site();
-                        newSite.setName(site.getName());
-                        newSite.setUrl(site.getUrl());
-                        newSite.setStatus(IndexingStatus.INDEXING);
-                        newSite.setStatusTime(LocalDateTime.now());
-                        siteRepository.save(newSite);
-                        crawlAndIndexPages(newSite, site.getUrl());
+                        CrawlSettings.ReindexMode mode = crawlSettings.getReindexMode();
+                        searchengine.model.Site resumable = mode == CrawlSettings.ReindexMode.RESUME
+                                ? findResumableSite(site.getUrl()) : null;
+                        searchengine.model.Site existing = mode == CrawlSettings.ReindexMode.INCREMENTAL
+                                ? siteRepository.findByUrl(site.getUrl()) : null;
+                        boolean resumed = resumable != null;
+                        boolean incremental = existing != null;
+                        // Полная переиндексация строит новое поколение, поиск до конца обходит прежнее
+                        if (resumed) {
+                            newSite = siteRepository.save(reuseSite(resumable, site));
+                        } else if (incremental) {
+                            newSite = siteRepository.save(reuseSite(existing, site));
+                        } else {
+                            newSite = siteGenerations.begin(site);
+                        }
+                        List<Integer> removedPages = crawlAndIndexPages(newSite, site, incremental, resumed);
+                        if (indexingInProgress) {
+                            pageWriter.awaitSite(newSite.getId());
+                            indexingPipeline.awaitSite(newSite.getId());
+                            if (!removedPages.isEmpty()) {
+                                pageIndexer.removePages(newSite.getId(), removedPages);
+                                logger.info("Удалено {} исчезнувших страниц сайта {}.", removedPages.size(), site.getUrl());
+                            }
+                            lemmaDictionary.release(newSite.getId());
+                        }
                         if (indexingInProgress) {
-                            updateSiteStatusToIndexed(newSite);
+                            siteGenerations.promote(newSite);
+                            checkpointStore.delete(newSite);
                         } else {
                             logger.warn("Индексация была прервана. Статус сайта {} не обновлен на INDEXED.", site.getName());
                         }
                     } catch (Exception e) {
-                        handleIndexingError(site.getUrl(), e);
+                        handleIndexingError(newSite, site.getUrl(), e);
                     }
                 });
             }
@@ -170,34 +342,114 @@ public class IndexingService {
         }
     }
 
-    private void crawlAndIndexPages(searchengine.model.Site site, String startUrl) {
-        forkJoinPool = new ForkJoinPool();
+    // Поколение, обход которого был остановлен и сохранился в журнале
+    private searchengine.model.Site findResumableSite(String siteUrl) {
+        return checkpointStore.findResumable(siteUrl)
+                .flatMap(siteRepository::findById)
+                .filter(site -> !(site.isLive() && site.getStatus() == IndexingStatus.INDEXED))
+                .orElse(null);
+    }
+
+    // В инкрементальном режиме и при продолжении обхода сайт сохраняет свои страницы и леммы
+    private searchengine.model.Site reuseSite(searchengine.model.Site existing, Site siteConfig) {
+        existing.setName(siteConfig.getName());
+        existing.setStatus(IndexingStatus.INDEXING);
+        existing.setLastError(null);
+        existing.setStatusTime(LocalDateTime.now());
+        return existing;
+    }
+
+    // Обходит сайт; возвращает id ранее сохраненных страниц, которые при обходе не встретились
+    private List<Integer> crawlAndIndexPages(searchengine.model.Site site, Site siteConfig, boolean incremental,
+                                             boolean resumed) throws InterruptedException {
+        String startUrl = siteConfig.getUrl();
+        SiteDiscovery discovery = crawlServices.getSiteDiscovery();
+        RobotsRules robots = discovery.loadRobots(startUrl);
+        if (robots.isUnreachable()) {
+            // Сервер не отдал robots.txt: не запрашиваем и корень, страницы прошлого обхода остаются
+            throw new IllegalStateException("robots.txt сайта недоступен, обход отложен");
+        }
+        long requestIntervalMs = discovery.requestInterval(siteConfig.getRequestIntervalMs() != null
+                ? siteConfig.getRequestIntervalMs()
+                : politenessSettings.getDefaultIntervalMs(), robots);
+
+        VisitedUrlSet visitedUrls = visitedUrlSetFactory.create();
+        if (!incremental) {
+            // При инкрементальном обходе сохраненные страницы перезапрашиваются, реестр начинается пустым
+            pathRegistry.warmUp(site.getId());
+        }
+        // Инкрементальный обход перепроверяет весь сайт, продолжать его по журналу незачем
+        CrawlCheckpoint checkpoint = incremental ? CrawlCheckpoint.disabled() : checkpointStore.open(site);
+        ExecutorService crawlExecutor = crawlExecutorFactory.create(siteConfig);
+        crawlExecutors.add(crawlExecutor);
         try {
-            forkJoinPool.invoke(new PageCrawler(site, startUrl, new HashSet<>(), pageRepository, this));
+            SiteCrawlContext crawl = new SiteCrawlContext(site, visitedUrls, crawlExecutor, requestIntervalMs,
+                    this, crawlServices, checkpoint, robots, crawlServices.getCanonicalizerFactory().create(siteConfig),
+                    crawlServices.getNearDuplicateIndexFactory().create());
+            crawl.markVisited(startUrl);
+            crawlServices.getMetrics().crawlStarted(crawl, crawlExecutor);
+            if (incremental) {
+                List<PageSnapshot> snapshots = pageRepository.findSnapshotsBySiteId(site.getId());
+                crawl.setPreviousPages(snapshots);
+                logger.info("Инкрементальный обход сайта {}: сохранено {} страниц.", site.getUrl(), snapshots.size());
+            }
+            CrawlCheckpoint.State state = resumed ? checkpoint.load() : null;
+            if (state == null || state.visited().isEmpty()) {
+                // Корень сайта обходится всегда: он явно указан в настройках
+                int seeded = crawl.seed(startUrl, () -> discovery.sitemapUrls(startUrl, robots));
+                if (seeded > 0) {
+                    logger.info("Очередь обхода сайта {} дополнена {} адресами из карт сайта.", site.getUrl(), seeded);
+                }
+            } else if (crawl.resume(state)) {
+                logger.info("Обход сайта {} продолжен: посещено {} URL, в очереди {}.",
+                        site.getUrl(), state.visited().size(), state.frontier().size());
+            } else {
+                logger.info("Обход сайта {} был завершен до остановки.", site.getUrl());
+                return List.of();
+            }
+            if (!crawl.awaitCompletion()) {
+                logger.info("Обход сайта {} остановлен, задач в очереди: {}", site.getUrl(), crawl.getPending().get());
+                return List.of();
+            }
+            return crawl.getPreviousPages().values().stream().map(PageSnapshot::id).toList();
         } finally {
-            forkJoinPool.shutdown();
+            // Задачи остановленного обхода, отложенные до слота хоста, снимаются сразу
+            crawlServices.getHostScheduler().cancel(crawlExecutor);
+            crawlExecutor.shutdown();
+            crawlExecutors.remove(crawlExecutor);
+            crawlServices.getMetrics().crawlFinished(site.getId());
+            checkpointStore.close(site.getId());
+            pathRegistry.release(site.getId());
+            logger.info("Посещенные URL сайта {}: {}", site.getUrl(), visitedUrls.describe());
+            visitedUrls.close();
         }
     }
 
-    private void deleteSiteData(String siteUrl) {
-        searchengine.model.Site site = siteRepository.findByUrl(siteUrl);
-        if (site != null) {
-            int pagesDeleted = pageRepository.deleteAllBySiteId(site.getId());
-            siteRepository.delete(site);
-            logger.info("Удалено {} записей из таблицы page для сайта {}.", pagesDeleted, siteUrl);
+    private void finishPipeline() {
+        // Поток индексации мог быть прерван остановкой; сбрасываем флаг, чтобы дождаться записи очередей
+        boolean interrupted = Thread.interrupted();
+        try {
+            pageWriter.stop();
+            pageWriter.awaitTermination();
+            indexingPipeline.stop();
+            indexingPipeline.awaitTermination();
+            lemmaDictionary.flushAll();
+            crawlServices.getPageContents().logStorageSize();
+        } catch (InterruptedException e) {
+            logger.warn("Ожидание завершения записи и индексации прервано.");
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void updateSiteStatusToIndexed(searchengine.model.Site site) {
-        site.setStatus(IndexingStatus.INDEXED);
-        site.setStatusTime(LocalDateTime.now());
-        siteRepository.save(site);
-        logger.info("Сайт {} изменил статус на INDEXED.", site.getUrl());
-    }
-
-    private void handleIndexingError(String siteUrl, Exception e) {
-        searchengine.model.Site site = siteRepository.findByUrl(siteUrl);
+    private void handleIndexingError(searchengine.model.Site site, String siteUrl, Exception e) {
+        if (site == null) {
+            site = siteRepository.findByUrl(siteUrl);
+        }
         if (site != null) {
+            // Неудавшееся новое поколение не действующее и будет удалено в фоне
             site.setStatus(IndexingStatus.FAILED);
             site.setLastError(e.getMessage());
             site.setStatusTime(LocalDateTime.now());
@@ -216,17 +468,4 @@ public class IndexingService {
             logger.info("Сайт {} изменил статус на FAILED: {}", site.getUrl(), errorMessage);
         }
     }
-
-    private void savePageIfUnique(String url, String content, searchengine.model.Site site) {
-        if (pageRepository.findByPathAndSiteId(url, site.getId()).isEmpty()) {
-            Page page = new Page();
-            page.setPath(url); // Используем setPath, так как поле называется path
-            page.setContent(content);
-            page.setSite(site);
-            pageRepository.save(page);
-            logger.info("Сохранена уникальная страница: {}", url);
-        } else {
-            logger.info("Страница {} уже существует. Пропускаем сохранение.", url);
-        }
-    }
 }
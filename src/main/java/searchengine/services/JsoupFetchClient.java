@@ -0,0 +1,72 @@
+package searchengine.services;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Запросы через Jsoup: на каждый запрос открывается новое соединение.
+ * Оставлен для сравнения и для сайтов, с которыми не работает {@link HttpClientFetchClient}.
+ */
+public class JsoupFetchClient implements FetchClient {
+
+    private final String userAgent;
+    private final int timeoutMs;
+
+    public JsoupFetchClient(String userAgent, int timeoutMs) {
+        this.userAgent = userAgent;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public Response execute(String url, String method, Map<String, String> headers) throws IOException {
+        Connection.Response response = Jsoup.connect(url)
+                .userAgent(userAgent)
+                .referrer("http://www.google.com")
+                .headers(headers)
+                .method(Connection.Method.valueOf(method))
+                .timeout(timeoutMs)
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .maxBodySize(0)
+                .execute();
+        return new Response() {
+            private InputStream body;
+
+            @Override
+            public String url() {
+                return response.url().toString();
+            }
+
+            @Override
+            public int statusCode() {
+                return response.statusCode();
+            }
+
+            @Override
+            public String header(String name) {
+                return response.header(name);
+            }
+
+            @Override
+            public InputStream body() {
+                // Jsoup читает тело лениво и сам распаковывает gzip; поток можно получить только один раз
+                if (body == null) {
+                    body = response.bodyStream();
+                }
+                return body;
+            }
+
+            @Override
+            public void close() throws IOException {
+                // У ответа на HEAD нет тела
+                if (!Connection.Method.HEAD.name().equals(method)) {
+                    body().close();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package searchengine.services;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру потокобезопасный кэш "словоформа -> леммы".
+ * Кэш разбит на сегменты с LRU-вытеснением, чтобы потоки краулера
+ * не конкурировали за одну блокировку.
+ */
+public class LemmaCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LemmaCache(int capacity) {
+        int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public List<String> get(String word, Function<String, List<String>> loader) {
+        Segment segment = segmentFor(word);
+        List<String> lemmas;
+        synchronized (segment) {
+            lemmas = segment.get(word);
+        }
+        if (lemmas != null) {
+            hits.increment();
+            return lemmas;
+        }
+        misses.increment();
+
+        // Морфологический анализ выполняем вне блокировки сегмента
+        lemmas = loader.apply(word);
+        synchronized (segment) {
+            segment.put(word, lemmas);
+        }
+        return lemmas;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String word) {
+        int h = word.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private class Segment extends LinkedHashMap<String, List<String>> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Счетчики лемм страницы: открытая адресация с массивами ключей и int-значений
+ * вместо HashMap с упакованными Integer. Рассчитан на повторное использование
+ * одним потоком: {@link #clear()} очищает только занятые ячейки.
+ * Для индексации вместе со счетчиком запоминаются границы первых вхождений леммы.
+ */
+public class LemmaCounts {
+
+    private String[] keys;
+    private int[] counts;
+    private int[] used;
+    // Границы вхождений по ячейкам: start, end, ...; массивы остаются за ячейкой после clear()
+    private int[][] offsets;
+    private int[] offsetLengths;
+    private int size;
+
+    public LemmaCounts() {
+        this(1024);
+    }
+
+    public LemmaCounts(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new String[capacity];
+        counts = new int[capacity];
+        used = new int[capacity];
+        offsets = new int[capacity][];
+        offsetLengths = new int[capacity];
+    }
+
+    public void add(String lemma, int delta) {
+        counts[insert(lemma)] += delta;
+    }
+
+    // Учитывает вхождение леммы и запоминает его границы, если их еще меньше maxOffsets
+    public void add(String lemma, int start, int end, int maxOffsets) {
+        int slot = insert(lemma);
+        counts[slot]++;
+        int length = offsetLengths[slot];
+        if (length / 2 >= maxOffsets) {
+            return;
+        }
+        int[] slotOffsets = offsets[slot];
+        if (slotOffsets == null || slotOffsets.length == length) {
+            slotOffsets = offsets[slot] = Arrays.copyOf(slotOffsets == null ? new int[0] : slotOffsets,
+                    Math.min(Math.max(8, length * 2), maxOffsets * 2));
+        }
+        // Разные разборы словоформы могут дать одну лемму дважды
+        if (length > 0 && slotOffsets[length - 2] == start) {
+            return;
+        }
+        slotOffsets[length] = start;
+        slotOffsets[length + 1] = end;
+        offsetLengths[slot] = length + 2;
+    }
+
+    // Границы запомненных вхождений в формате {@link TokenPositions}, null — если их нет
+    public byte[] positions(String lemma) {
+        int slot = slotOf(lemma);
+        return keys[slot] == null || offsetLengths[slot] == 0
+                ? null : TokenPositions.encode(offsets[slot], offsetLengths[slot]);
+    }
+
+    public int get(String lemma) {
+        int slot = slotOf(lemma);
+        return keys[slot] == null ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Обход в порядке первого появления лемм
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < size; i++) {
+            int slot = used[i];
+            action.accept(keys[slot], counts[slot]);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            int slot = used[i];
+            keys[slot] = null;
+            counts[slot] = 0;
+            offsetLengths[slot] = 0;
+        }
+        size = 0;
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    // Ячейка леммы; отсутствующая лемма добавляется
+    private int insert(String lemma) {
+        int slot = slotOf(lemma);
+        if (keys[slot] == null) {
+            keys[slot] = lemma;
+            used[size++] = slot;
+            if (size * 2 > keys.length) {
+                grow();
+                slot = slotOf(lemma);
+            }
+        }
+        return slot;
+    }
+
+    private int slotOf(String lemma) {
+        int mask = keys.length - 1;
+        int hash = lemma.hashCode() * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(lemma)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int[][] oldOffsets = offsets;
+        int[] oldOffsetLengths = offsetLengths;
+        int[] oldUsed = Arrays.copyOf(used, size);
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        used = new int[keys.length];
+        offsets = new int[keys.length][];
+        offsetLengths = new int[keys.length];
+        int oldSize = size;
+        size = 0;
+        for (int i = 0; i < oldSize; i++) {
+            int slot = slotOf(oldKeys[oldUsed[i]]);
+            keys[slot] = oldKeys[oldUsed[i]];
+            counts[slot] = oldCounts[oldUsed[i]];
+            offsets[slot] = oldOffsets[oldUsed[i]];
+            offsetLengths[slot] = oldOffsetLengths[oldUsed[i]];
+            used[size++] = slot;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.LemmaDictionarySettings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Словарь лемм сайта в памяти: строка леммы -> идентификатор и частота.
+ * Загружается из базы при первом обращении к сайту и общий для всех потоков индексации.
+ * Новые леммы страницы вставляются одним пакетом, идентификаторы назначает база и они
+ * перечитываются по (site_id, lemma); приращения частот накапливаются и сбрасываются в базу пакетами.
+ * Столбец lemma.lemma сравнивается двоично, поэтому лемма в базе равна лемме в памяти
+ * тогда и только тогда, когда равны строки.
+ */
+@Component
+public class LemmaDictionary {
+
+    private static final Logger logger = LoggerFactory.getLogger(LemmaDictionary.class);
+
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO lemma (site_id, lemma, frequency) VALUES (?, ?, 0)";
+    private static final String ADD_FREQUENCY_SQL = "UPDATE lemma SET frequency = frequency + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final LemmaDictionarySettings settings;
+    private final SiteStatisticsRegistry statisticsRegistry;
+    private final CrawlMetrics metrics;
+    // Новые леммы записываются в собственной транзакции: ожидающие их потоки
+    // не должны увидеть лемму раньше, чем ее строка зафиксирована в базе
+    private final TransactionTemplate insertTransaction;
+    private final Map<Integer, SiteLemmas> sites = new ConcurrentHashMap<>();
+    // Страницы, проиндексированные после последнего сброса частот; обнуляется при сбросе
+    private final AtomicInteger pagesSinceFlush = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public LemmaDictionary(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                           LemmaDictionarySettings settings, SiteStatisticsRegistry statisticsRegistry,
+                           CrawlMetrics metrics, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.settings = settings;
+        this.statisticsRegistry = statisticsRegistry;
+        this.metrics = metrics;
+        this.insertTransaction = new TransactionTemplate(transactionManager);
+        this.insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Таблица, созданная до перехода на двоичное сравнение, сравнивает леммы без учета ё и диакритики:
+     * "ёлка" совпадает с "елка", и вставка одной из них пропускается. ddl-auto=update сравнение
+     * столбца не меняет, поэтому оно приводится к utf8mb4_bin при запуске.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureBinaryCollation() {
+        List<String> collations = jdbcTemplate.queryForList(
+                "SELECT collation_name FROM information_schema.columns " +
+                        "WHERE table_schema = DATABASE() AND table_name = 'lemma' AND column_name = 'lemma'",
+                String.class);
+        if (collations.isEmpty() || collations.get(0) == null || collations.get(0).endsWith("_bin")) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE lemma MODIFY lemma VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL");
+        logger.info("Сравнение столбца lemma.lemma изменено с {} на utf8mb4_bin.", collations.get(0));
+    }
+
+    /**
+     * Находит или создает леммы страницы. Созданные этим вызовом леммы записываются в базу
+     * одним пакетом; если лемму создал другой поток, вызов дожидается фиксации ее строки,
+     * чтобы строки index не ссылались на отсутствующую лемму. Лемма, чья строка не нашлась
+     * после вставки, в результат не попадает и убирается из словаря, чтобы следующая страница
+     * повторила вставку.
+     */
+    public List<LemmaEntry> resolve(int siteId, Iterable<String> lemmas) {
+        SiteLemmas siteLemmas = sites.computeIfAbsent(siteId, this::load);
+        List<LemmaEntry> entries = new ArrayList<>();
+        List<LemmaEntry> created = new ArrayList<>();
+        for (String lemma : lemmas) {
+            LemmaEntry entry = siteLemmas.entries.get(lemma);
+            if (entry == null) {
+                LemmaEntry candidate = new LemmaEntry(lemma);
+                entry = siteLemmas.entries.putIfAbsent(lemma, candidate);
+                if (entry == null) {
+                    entry = candidate;
+                    created.add(candidate);
+                }
+            }
+            entries.add(entry);
+        }
+
+        if (!created.isEmpty()) {
+            insert(siteId, siteLemmas, created);
+        }
+        List<LemmaEntry> resolved = new ArrayList<>(entries.size());
+        for (LemmaEntry entry : entries) {
+            if (entry.awaitPersisted()) {
+                resolved.add(entry);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Идентификаторы лемм для переиндексации одной страницы. Если словарь сайта не загружен,
+     * он не загружается целиком: существующие леммы выбираются запросом, недостающие вставляются
+     * с частотой 0 в собственной транзакции и перечитываются.
+     */
+    public Map<String, Integer> lookupIds(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (lemmas.isEmpty()) {
+            return ids;
+        }
+        if (sites.containsKey(siteId)) {
+            for (LemmaEntry entry : resolve(siteId, lemmas)) {
+                ids.put(entry.getLemma(), entry.getId());
+            }
+            return ids;
+        }
+
+        selectIds(siteId, lemmas, ids);
+        List<String> missing = lemmas.stream().filter(lemma -> !ids.containsKey(lemma)).toList();
+        if (!missing.isEmpty()) {
+            int before = ids.size();
+            insertTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, missing.stream()
+                        .map(lemma -> new Object[]{siteId, lemma})
+                        .toList());
+                // Лемму мог одновременно создать другой поток, поэтому идентификаторы перечитываются
+                selectIds(siteId, missing, ids);
+            });
+            statisticsRegistry.lemmasAdded(siteId, ids.size() - before);
+        }
+        return ids;
+    }
+
+    // Учитывает проиндексированную страницу и при необходимости сбрасывает накопленные частоты
+    public void pageIndexed() {
+        // Пока идет сброс, счетчик не обнуляется, и сброс выполнит следующая страница
+        if (pagesSinceFlush.incrementAndGet() >= settings.getFlushEveryPages() && flushLock.tryLock()) {
+            try {
+                pagesSinceFlush.set(0);
+                sites.keySet().forEach(this::flushSite);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    // Записывает накопленные приращения частот сайта
+    public void flush(int siteId) {
+        flushLock.lock();
+        try {
+            flushSite(siteId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            pagesSinceFlush.set(0);
+            sites.keySet().forEach(this::flushSite);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Сбрасывает частоты и выгружает словарь сайта из памяти
+    public void release(int siteId) {
+        flush(siteId);
+        sites.remove(siteId);
+    }
+
+    // Выгружает словарь без записи частот, например перед удалением данных сайта
+    public void discard(int siteId) {
+        sites.remove(siteId);
+    }
+
+    public int size(int siteId) {
+        SiteLemmas siteLemmas = sites.get(siteId);
+        return siteLemmas == null ? 0 : siteLemmas.entries.size();
+    }
+
+    private void flushSite(int siteId) {
+        SiteLemmas siteLemmas = sites.get(siteId);
+        if (siteLemmas == null) {
+            return;
+        }
+        List<LemmaEntry> dirty = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (LemmaEntry entry : siteLemmas.entries.values()) {
+            int delta = entry.pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                dirty.add(entry);
+                rows.add(new Object[]{delta, entry.id});
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            jdbcTemplate.batchUpdate(ADD_FREQUENCY_SQL, rows);
+            metrics.batchFlushed("lemma", rows.size(), System.nanoTime() - started);
+            logger.debug("Частоты {} лемм сайта {} записаны.", rows.size(), siteId);
+        } catch (RuntimeException e) {
+            // Возвращаем приращения, чтобы записать их при следующем сбросе
+            for (int i = 0; i < dirty.size(); i++) {
+                dirty.get(i).pendingDelta.addAndGet((Integer) rows.get(i)[0]);
+            }
+            logger.warn("Ошибка записи частот лемм сайта {}: {}", siteId, e.getMessage());
+        }
+    }
+
+    /**
+     * Вставляет созданные леммы и перечитывает их идентификаторы в одной транзакции.
+     * Ожидающие потоки освобождаются только после ее фиксации; при ошибке записи
+     * леммы убираются из словаря, а ожидающие получают исключение.
+     */
+    private void insert(int siteId, SiteLemmas siteLemmas, List<LemmaEntry> created) {
+        List<String> lemmas = created.stream().map(LemmaEntry::getLemma).toList();
+        Map<String, Integer> ids = new HashMap<>();
+        try {
+            insertTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, lemmas.stream()
+                        .map(lemma -> new Object[]{siteId, lemma})
+                        .toList());
+                selectIds(siteId, lemmas, ids);
+            });
+        } catch (RuntimeException e) {
+            for (LemmaEntry entry : created) {
+                siteLemmas.entries.remove(entry.lemma, entry);
+                entry.complete(LemmaEntry.FAILED, 0);
+            }
+            throw e;
+        }
+        int added = 0;
+        for (LemmaEntry entry : created) {
+            Integer id = ids.get(entry.lemma);
+            if (id == null) {
+                // При двоичном сравнении столбца не случается; лемма не закрепляется в словаре отвергнутой
+                logger.warn("Лемма \"{}\" сайта {} не найдена после вставки.", entry.lemma, siteId);
+                siteLemmas.entries.remove(entry.lemma, entry);
+                entry.complete(LemmaEntry.REJECTED, 0);
+            } else {
+                entry.complete(LemmaEntry.PERSISTED, id);
+                added++;
+            }
+        }
+        statisticsRegistry.lemmasAdded(siteId, added);
+    }
+
+    private void selectIds(int siteId, Collection<String> lemmas, Map<String, Integer> ids) {
+        namedJdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = :siteId AND lemma IN (:lemmas)",
+                Map.of("siteId", siteId, "lemmas", lemmas),
+                rs -> {
+                    ids.put(rs.getString(2), rs.getInt(1));
+                });
+    }
+
+    private SiteLemmas load(int siteId) {
+        SiteLemmas siteLemmas = new SiteLemmas();
+        jdbcTemplate.query("SELECT id, lemma, frequency FROM lemma WHERE site_id = ?",
+                rs -> {
+                    LemmaEntry entry = new LemmaEntry(rs.getString(2));
+                    entry.frequency.set(rs.getInt(3));
+                    entry.complete(LemmaEntry.PERSISTED, rs.getInt(1));
+                    siteLemmas.entries.put(entry.lemma, entry);
+                },
+                siteId);
+        logger.info("Словарь лемм сайта {} загружен: {} лемм.", siteId, siteLemmas.entries.size());
+        return siteLemmas;
+    }
+
+    private static class SiteLemmas {
+        private final Map<String, LemmaEntry> entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Лемма сайта: идентификатор из базы, частота в памяти и еще не записанное приращение.
+     * Идентификатор известен после фиксации вставки, до этого лемма находится в ожидании.
+     */
+    public static class LemmaEntry {
+        private static final int PENDING = 0;
+        private static final int PERSISTED = 1;
+        // Строка леммы не найдена после вставки; лемма пропускается этой страницей
+        private static final int REJECTED = 2;
+        private static final int FAILED = 3;
+
+        private final String lemma;
+        private final AtomicInteger frequency = new AtomicInteger();
+        private final AtomicInteger pendingDelta = new AtomicInteger();
+        private volatile int id;
+        private volatile int state = PENDING;
+
+        LemmaEntry(String lemma) {
+            this.lemma = lemma;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getLemma() {
+            return lemma;
+        }
+
+        public int getFrequency() {
+            return frequency.get();
+        }
+
+        // Изменяет частоту леммы; в базу приращение попадет при следующем сбросе
+        public void addFrequency(int delta) {
+            frequency.addAndGet(delta);
+            pendingDelta.addAndGet(delta);
+        }
+
+        private synchronized void complete(int state, int id) {
+            this.id = id;
+            this.state = state;
+            notifyAll();
+        }
+
+        // Дожидается записи леммы; false — строка леммы не найдена после вставки
+        private boolean awaitPersisted() {
+            if (state == PENDING) {
+                synchronized (this) {
+                    boolean interrupted = false;
+                    while (state == PENDING) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            if (state == FAILED) {
+                throw new IllegalStateException("Лемма \"" + lemma + "\" не записана в базу");
+            }
+            return state == PERSISTED;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.services;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.LemmatizerSettings;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Общий для всех потоков лемматизатор. Словари морфологии загружаются один раз,
+ * результаты анализа словоформ кэшируются в {@link LemmaCache}. Слова на кириллице
+ * разбираются русской морфологией, на латинице — английской.
+ */
+@Component
+public class Lemmatizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(Lemmatizer.class);
+
+    // Служебные части речи: частицы, союзы, предлоги и междометия
+    private static final Set<String> EXCLUDED_RUSSIAN = Set.of("ЧАСТ", "СОЮЗ", "ПРЕДЛ", "МЕЖД");
+    // То же для английского словаря, плюс артикли
+    private static final Set<String> EXCLUDED_ENGLISH = Set.of("PART", "CONJ", "PREP", "INT", "ARTICLE");
+
+    private final LuceneMorphology russianMorph;
+    private final LuceneMorphology englishMorph;
+    private final LemmaCache cache;
+    // Загрузчики для кэша создаются один раз, чтобы не выделять лямбду на каждое слово
+    private final Function<String, List<String>> russianLoader;
+    private final Function<String, List<String>> englishLoader;
+
+    @Autowired
+    public Lemmatizer(LemmatizerSettings settings) {
+        this(settings.getCacheSize(), settings.isEnglishEnabled());
+    }
+
+    public Lemmatizer(int cacheSize) {
+        this(cacheSize, true);
+    }
+
+    public Lemmatizer(int cacheSize, boolean englishEnabled) {
+        try {
+            this.russianMorph = new RussianLuceneMorphology();
+            this.englishMorph = englishEnabled ? new EnglishLuceneMorphology() : null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Ошибка при инициализации морфологического анализатора", e);
+        }
+        this.cache = new LemmaCache(cacheSize);
+        this.russianLoader = word -> analyze(russianMorph, EXCLUDED_RUSSIAN, word);
+        this.englishLoader = word -> analyze(englishMorph, EXCLUDED_ENGLISH, word);
+        logger.info("Морфологический анализатор загружен, английский словарь: {}, размер кэша лемм: {}",
+                englishEnabled ? "включен" : "выключен", cacheSize);
+    }
+
+    // Подсчет количества упоминаний каждой леммы в тексте
+    public Map<String, Integer> collectLemmas(String text) {
+        LemmaCounts counts = new LemmaCounts();
+        countLemmas(text, counts);
+        return counts.toMap();
+    }
+
+    /**
+     * Леммы текста по словам: для каждого различного слова — множество его лемм (у омонимов их
+     * несколько). Слова без лемм, например служебные, пропускаются; одинаковые множества склеиваются.
+     */
+    public List<Set<String>> collectLemmaGroups(String text) {
+        Map<String, Set<String>> groups = new LinkedHashMap<>();
+        WordTokenizer.tokenize(text, (word, script, start, end) -> {
+            List<String> lemmas = getLemmas(word, script);
+            if (!lemmas.isEmpty()) {
+                groups.computeIfAbsent(word, key -> Set.copyOf(lemmas));
+            }
+        });
+        return List.copyOf(new LinkedHashSet<>(groups.values()));
+    }
+
+    /**
+     * Добавляет в counts упоминания лемм текста и возвращает число слов в нем.
+     * Текст разбирается за один проход, без копий в нижнем регистре и регулярных выражений.
+     */
+    public int countLemmas(CharSequence text, LemmaCounts counts) {
+        return WordTokenizer.tokenize(text, (word, script, start, end) -> {
+            List<String> lemmas = getLemmas(word, script);
+            for (int i = 0; i < lemmas.size(); i++) {
+                counts.add(lemmas.get(i), 1);
+            }
+        });
+    }
+
+    // То же с запоминанием границ первых maxOffsets вхождений каждой леммы
+    public int countLemmas(CharSequence text, LemmaCounts counts, int maxOffsets) {
+        return WordTokenizer.tokenize(text, (word, script, start, end) -> {
+            List<String> lemmas = getLemmas(word, script);
+            for (int i = 0; i < lemmas.size(); i++) {
+                counts.add(lemmas.get(i), start, end, maxOffsets);
+            }
+        });
+    }
+
+    // Леммы словоформы без служебных частей речи; словоформа должна быть в нижнем регистре
+    public List<String> getLemmas(String word) {
+        WordTokenizer.Script script = word.isEmpty() ? null : WordTokenizer.scriptOf(word.charAt(0));
+        return script == null ? List.of() : getLemmas(word, script);
+    }
+
+    public List<String> getLemmas(String word, WordTokenizer.Script script) {
+        if (script == WordTokenizer.Script.CYRILLIC) {
+            return cache.get(word, russianLoader);
+        }
+        return englishMorph == null ? List.of() : cache.get(word, englishLoader);
+    }
+
+    public LemmaCache getCache() {
+        return cache;
+    }
+
+    private static List<String> analyze(LuceneMorphology morph, Set<String> excluded, String word) {
+        List<String> morphInfo;
+        try {
+            morphInfo = morph.getMorphInfo(word);
+        } catch (RuntimeException e) {
+            logger.debug("Не удалось разобрать слово '{}': {}", word, e.getMessage());
+            return List.of();
+        }
+
+        List<String> lemmas = new ArrayList<>(1);
+        for (String info : morphInfo) {
+            // Формат записи: "лемма|код ЧАСТЬ_РЕЧИ граммемы"
+            int separator = info.indexOf('|');
+            if (separator <= 0) continue;
+            if (isExcluded(info, separator, excluded)) return List.of();
+            String lemma = info.substring(0, separator);
+            if (!lemmas.contains(lemma)) {
+                lemmas.add(lemma);
+            }
+        }
+        return List.copyOf(lemmas);
+    }
+
+    // Часть речи — второе слово после разделителя; ищем его границы без split
+    private static boolean isExcluded(String info, int separator, Set<String> excluded) {
+        int start = info.indexOf(' ', separator + 1);
+        if (start < 0) return false;
+        int end = info.indexOf(' ', start + 1);
+        return excluded.contains(info.substring(start + 1, end < 0 ? info.length() : end));
+    }
+}
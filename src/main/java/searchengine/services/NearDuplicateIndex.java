@@ -0,0 +1,134 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отпечатки SimHash страниц одного обхода с поиском отпечатка на расстоянии Хэмминга
+ * не больше maxDistance. Отпечаток делится на maxDistance + 1 блоков: у отпечатков,
+ * различающихся не больше чем в maxDistance битах, хотя бы один блок совпадает целиком,
+ * поэтому кандидаты ищутся точным совпадением блока. Тексты короче minWords слов
+ * не сравниваются.
+ * Из нескольких близких страниц оригиналом остается страница с меньшим рангом
+ * (см. {@link #rank}): уже проиндексированная, затем с меньшим id, поэтому выбор
+ * не зависит от порядка загрузки страниц, известных с прошлого обхода.
+ */
+public class NearDuplicateIndex {
+
+    private record Entry(long hash, String path, long rank) {
+    }
+
+    private static final NearDuplicateIndex DISABLED = new NearDuplicateIndex(0, Integer.MAX_VALUE);
+
+    private final int maxDistance;
+    private final int minWords;
+    private final int blocks;
+    private final List<Map<Long, List<Entry>>> tables;
+    private final Map<String, Entry> byPath = new HashMap<>();
+
+    public NearDuplicateIndex(int maxDistance, int minWords) {
+        this.maxDistance = Math.max(0, Math.min(maxDistance, 7));
+        this.minWords = minWords;
+        this.blocks = this.maxDistance + 1;
+        this.tables = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            tables.add(new HashMap<>());
+        }
+    }
+
+    // Индекс, в котором дубликатов не бывает
+    public static NearDuplicateIndex disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Ранг страницы при выборе оригинала: проиндексированные страницы по возрастанию id,
+     * затем прочие сохраненные страницы (псевдонимы) по id, затем новые страницы.
+     */
+    public static long rank(Integer id, boolean indexed) {
+        if (id == null) {
+            return Long.MAX_VALUE;
+        }
+        return indexed ? id : (long) Integer.MAX_VALUE + id;
+    }
+
+    // Участвует ли текст в поиске почти дубликатов; отпечатки прочих текстов не сохраняются
+    public boolean accepts(SimHash.Fingerprint fingerprint) {
+        return this != DISABLED && fingerprint.words() >= minWords;
+    }
+
+    /**
+     * Добавляет сохраненный отпечаток страницы прошлого обхода, чтобы страницы,
+     * загруженные раньше нее, сравнивались и с ней.
+     */
+    public synchronized void seed(long hash, String path, long rank) {
+        if (this != DISABLED) {
+            put(new Entry(hash, path, rank));
+        }
+    }
+
+    /**
+     * Ищет среди близких страниц оригинал с рангом не больше rank; если его нет, запоминает
+     * отпечаток под путем path (заменяя прежний отпечаток этого пути). Возвращает путь
+     * найденного оригинала или null.
+     */
+    public String findOrAdd(SimHash.Fingerprint fingerprint, String path, long rank) {
+        if (!accepts(fingerprint)) {
+            return null;
+        }
+        return findOrAdd(fingerprint.hash(), path, rank);
+    }
+
+    private synchronized String findOrAdd(long hash, String path, long rank) {
+        Entry best = null;
+        for (int i = 0; i < blocks; i++) {
+            List<Entry> candidates = tables.get(i).get(block(hash, i));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (!candidate.path.equals(path) && SimHash.distance(candidate.hash, hash) <= maxDistance
+                        && (best == null || candidate.rank < best.rank)) {
+                    best = candidate;
+                }
+            }
+        }
+        // При равных рангах (новые страницы) оригиналом остается встреченная раньше
+        if (best != null && best.rank <= rank) {
+            // Псевдоним сам не может быть оригиналом: отпечаток прошлого обхода убирается
+            remove(byPath.remove(path));
+            return best.path;
+        }
+        put(new Entry(hash, path, rank));
+        return null;
+    }
+
+    private void put(Entry entry) {
+        remove(byPath.put(entry.path, entry));
+        for (int i = 0; i < blocks; i++) {
+            tables.get(i).computeIfAbsent(block(entry.hash, i), key -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (int i = 0; i < blocks; i++) {
+            List<Entry> bucket = tables.get(i).get(block(entry.hash, i));
+            if (bucket != null) {
+                bucket.remove(entry);
+            }
+        }
+    }
+
+    // Биты блока i отпечатка
+    private long block(long hash, int i) {
+        int from = i * 64 / blocks;
+        int to = (i + 1) * 64 / blocks;
+        long mask = to - from == 64 ? -1L : (1L << (to - from)) - 1;
+        return hash >>> from & mask;
+    }
+}
@@ -0,0 +1,26 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.NearDuplicateSettings;
+
+@Component
+public class NearDuplicateIndexFactory {
+
+    private final NearDuplicateSettings settings;
+
+    public NearDuplicateIndexFactory(NearDuplicateSettings settings) {
+        this.settings = settings;
+    }
+
+    // Сохраняется ли отпечаток текста; короткие тексты почти дубликатами не считаются
+    public boolean accepts(SimHash.Fingerprint fingerprint) {
+        return settings.isEnabled() && fingerprint.words() >= settings.getMinWords();
+    }
+
+    public NearDuplicateIndex create() {
+        if (!settings.isEnabled()) {
+            return NearDuplicateIndex.disabled();
+        }
+        return new NearDuplicateIndex(settings.getMaxDistance(), settings.getMinWords());
+    }
+}
@@ -0,0 +1,183 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.ContentStoreSettings;
+import searchengine.model.Page;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Доступ к содержимому страниц независимо от способа хранения. При хранении INLINE
+ * HTML лежит в page.content; иначе он и текст сжимаются во внешнее {@link ContentStore},
+ * а в строке page остается ссылка content_ref. Страницы без ссылки читаются из page.content,
+ * поэтому ранее сохраненные данные остаются доступными.
+ */
+@Component
+public class PageContents {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageContents.class);
+
+    private static final String SELECT_SEGMENT_REFS_SQL =
+            "SELECT id, content_ref FROM page WHERE site_id = ? AND content_ref LIKE ?";
+    private static final String RELOCATE_SQL = "UPDATE page SET content_ref = ? WHERE id = ? AND content_ref = ?";
+    private static final int COMPACT_BATCH = 200;
+
+    private final ContentStore store;
+    private final JdbcTemplate jdbcTemplate;
+    private final double compactDeadRatio;
+
+    public PageContents(ContentStoreSettings settings, JdbcTemplate jdbcTemplate,
+                        NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compactDeadRatio = settings.getCompactDeadRatio();
+        this.store = switch (settings.getType()) {
+            case INLINE -> null;
+            case DB -> new DbContentStore(jdbcTemplate, namedJdbcTemplate, settings.getCompressionLevel());
+            case FILE -> new FileSegmentContentStore(settings.getDirectory(), settings.getSegmentSizeMb(),
+                    settings.getCompressionLevel());
+        };
+        logger.info("Хранение содержимого страниц: {}.", settings.getType());
+    }
+
+    /**
+     * Переносит содержимое страниц во внешнее хранилище перед записью строк page:
+     * страница получает ссылку, а в page.content остается пустая строка.
+     * HTML и текст страницы в памяти сохраняются для стадии индексации.
+     */
+    public void store(List<Page> pages) {
+        if (store == null || pages.isEmpty()) {
+            return;
+        }
+        List<ContentStore.NewContent> contents = pages.stream()
+                .map(page -> new ContentStore.NewContent(page.getSite().getId(), page.getContent(), textOf(page)))
+                .toList();
+        List<String> refs = store.write(contents);
+        for (int i = 0; i < pages.size(); i++) {
+            pages.get(i).setContentRef(refs.get(i));
+        }
+    }
+
+    // Значение столбца page.content для записи страницы
+    public String columnValue(Page page) {
+        return page.getContentRef() == null ? page.getContent() : "";
+    }
+
+    // Тексты страниц по ссылкам на внешнее содержимое
+    public Map<String, String> texts(Collection<String> refs) {
+        return refs.isEmpty() ? Map.of() : store().readTexts(refs);
+    }
+
+    // Текст страницы: из памяти, если страница только что загружена, иначе из хранилища
+    public String text(Page page) {
+        if (page.getText() != null) {
+            return page.getText();
+        }
+        return isExternal(page) ? store().read(page.getContentRef()).text() : Jsoup.parse(page.getContent()).text();
+    }
+
+    public String html(Page page) {
+        return isExternal(page) ? store().read(page.getContentRef()).html() : page.getContent();
+    }
+
+    // Освобождает содержимое, замененное при обновлении страниц
+    public void release(Collection<String> refs) {
+        if (store != null && !refs.isEmpty()) {
+            store.delete(refs);
+        }
+    }
+
+    public void deleteSite(int siteId) {
+        if (store != null) {
+            store.deleteSite(siteId);
+        }
+    }
+
+    /**
+     * Уплотняет сегменты файлового хранилища с большой долей освобожденных записей: живые записи
+     * переписываются в текущий сегмент сайта, а ссылка в page заменяется, только если строка
+     * не изменилась за это время. Сегмент без ссылок удаляется на следующем проходе, чтобы
+     * успели завершиться чтения по ссылкам, полученным до замены.
+     */
+    @Scheduled(initialDelayString = "${indexing-settings.content-store.compact-interval-ms:600000}",
+            fixedDelayString = "${indexing-settings.content-store.compact-interval-ms:600000}")
+    public void compactSegments() {
+        if (!(store instanceof FileSegmentContentStore fileStore)) {
+            return;
+        }
+        for (FileSegmentContentStore.SegmentId segment : fileStore.segmentsToCompact(compactDeadRatio)) {
+            try {
+                compact(fileStore, segment);
+            } catch (RuntimeException e) {
+                logger.warn("Сегмент {} сайта {} не уплотнен: {}", segment.number(), segment.siteId(), e.getMessage());
+            }
+        }
+    }
+
+    private void compact(FileSegmentContentStore fileStore, FileSegmentContentStore.SegmentId segment) {
+        List<Map.Entry<Integer, String>> live = jdbcTemplate.query(SELECT_SEGMENT_REFS_SQL,
+                (rs, rowNum) -> Map.entry(rs.getInt(1), rs.getString(2)),
+                segment.siteId(), segment.refPrefix() + "%");
+        if (live.isEmpty()) {
+            fileStore.deleteSegment(segment);
+            logger.info("Сегмент {} сайта {} удален: ссылок на него не осталось.", segment.number(), segment.siteId());
+            return;
+        }
+        int moved = 0;
+        for (int from = 0; from < live.size(); from += COMPACT_BATCH) {
+            List<Map.Entry<Integer, String>> chunk = live.subList(from, Math.min(from + COMPACT_BATCH, live.size()));
+            List<ContentStore.NewContent> contents = new ArrayList<>(chunk.size());
+            for (Map.Entry<Integer, String> row : chunk) {
+                ContentStore.StoredContent content = fileStore.read(row.getValue());
+                contents.add(new ContentStore.NewContent(segment.siteId(), content.html(), content.text()));
+            }
+            List<String> refs = fileStore.write(contents);
+            List<String> unused = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                Map.Entry<Integer, String> row = chunk.get(i);
+                if (jdbcTemplate.update(RELOCATE_SQL, refs.get(i), row.getKey(), row.getValue()) == 1) {
+                    moved++;
+                } else {
+                    // Страница обновлена или удалена во время переноса, копия не нужна
+                    unused.add(refs.get(i));
+                }
+            }
+            fileStore.delete(unused);
+        }
+        fileStore.markDead(segment);
+        logger.info("Сегмент {} сайта {} уплотнен: перенесено {} записей.", segment.number(), segment.siteId(), moved);
+    }
+
+    // Пишет в лог размер таблиц со страницами, чтобы сравнивать способы хранения
+    public void logStorageSize() {
+        jdbcTemplate.query("SELECT table_name, data_length + index_length FROM information_schema.tables " +
+                        "WHERE table_schema = DATABASE() AND table_name IN ('page', 'page_content')",
+                rs -> {
+                    logger.info("Размер таблицы {}: {} МБ.", rs.getString(1), rs.getLong(2) / (1024 * 1024));
+                });
+    }
+
+    // Прочитанная из базы страница с внешним содержимым; у загруженной краулером HTML еще в памяти
+    private static boolean isExternal(Page page) {
+        return page.getContentRef() != null && (page.getContent() == null || page.getContent().isEmpty());
+    }
+
+    private static String textOf(Page page) {
+        return page.getText() != null ? page.getText() : Jsoup.parse(page.getContent()).text();
+    }
+
+    private ContentStore store() {
+        if (store == null) {
+            throw new IllegalStateException("Внешнее хранилище содержимого не настроено");
+        }
+        return store;
+    }
+}
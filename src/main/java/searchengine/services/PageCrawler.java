@@ -1,194 +1,333 @@
 package searchengine.services;
 
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import searchengine.dto.indexing.PageSnapshot;
 import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repository.PageRepository;
 
 import java.io.IOException;
-import java.net.URL;
-import java.util.*;
-import java.util.concurrent.RecursiveAction;
+import java.net.MalformedURLException;
+import java.util.Objects;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class PageCrawler extends RecursiveAction {
+public class PageCrawler implements AbortableTask {
     private static final Logger logger = LoggerFactory.getLogger(PageCrawler.class);
+    // Длина столбца page.path
+    private static final int MAX_PATH_LENGTH = 255;
+    private final SiteCrawlContext crawl;
     private final Site site;
     private final String url;
-    private final Set<String> visitedUrls;
-    private final PageRepository pageRepository;
     private final IndexingService indexingService;
+    private final PageWriter pageWriter;
+    private final PageFetcher pageFetcher;
+    // Путь и сведения о прежней странице сохраняются, пока задача отложена до слота хоста
+    private String path;
+    private PageSnapshot previous;
+    // Задача отложена и будет запущена снова, завершать ее рано
+    private boolean deferred;
 
-    public PageCrawler(Site site, String url, Set<String> visitedUrls, PageRepository pageRepository, IndexingService indexingService) {
-        this.site = site;
+    public PageCrawler(SiteCrawlContext crawl, String url) {
+        this.crawl = crawl;
+        this.site = crawl.getSite();
         this.url = url;
-        this.visitedUrls = visitedUrls;
-        this.pageRepository = pageRepository;
-        this.indexingService = indexingService;
+        this.indexingService = crawl.getIndexingService();
+        this.pageWriter = crawl.getServices().getPageWriter();
+        this.pageFetcher = crawl.getServices().getPageFetcher();
     }
 
     @Override
-    protected void compute() {
-        if (!checkAndLogStopCondition("Начало обработки")) return;
-
-        synchronized (visitedUrls) {
-            if (visitedUrls.contains(url)) {
-                logger.debug("URL уже обработан: {}", url);
-                return;
+    public void run() {
+        deferred = false;
+        try {
+            if (crawlPage()) {
+                crawl.urlDone(url);
+            }
+        } finally {
+            if (!deferred) {
+                crawl.taskFinished();
             }
-            visitedUrls.add(url);
         }
+    }
+
+    // Задача снята исполнителем без запуска: URL остается в журнале необработанным
+    @Override
+    public void abort() {
+        crawl.taskFinished();
+    }
+
+    // Возвращает true, если URL обработан полностью и его не нужно повторять при продолжении обхода
+    private boolean crawlPage() {
+        if (!checkAndLogStopCondition("Перед запросом")) return false;
 
         try {
-            long delay = 500 + new Random().nextInt(4500);
-            logger.debug("Задержка перед запросом: {} ms для URL: {}", delay, url);
-            Thread.sleep(delay);
+            if (path == null) {
+                String candidate;
+                try {
+                    candidate = crawl.pathOf(url);
+                } catch (MalformedURLException e) {
+                    logger.warn("Некорректный URL {}: {}", url, e.getMessage());
+                    return true;
+                }
+                if (candidate.length() > MAX_PATH_LENGTH) {
+                    logger.info("Путь страницы {} длиннее {} символов. Пропускаем.", url, MAX_PATH_LENGTH);
+                    return true;
+                }
+                // Проверка на уникальность страницы до запроса, чтобы не загружать ее повторно
+                if (!crawl.claimPath(candidate)) {
+                    if (crawl.isResumed(url)) {
+                        // Страница сохранена до остановки, но ее ссылки могли не попасть в очередь
+                        processStoredLinks(candidate);
+                        return indexingService.isIndexingInProgress();
+                    }
+                    logger.info("Страница {} уже существует. Пропускаем сохранение.", url);
+                    return true;
+                }
+                path = candidate;
+                previous = crawl.takePreviousPage(candidate).orElse(null);
+            }
 
-            if (!checkAndLogStopCondition("Перед запросом")) return;
+            // Слот хоста проверяется, когда задача готова к запросу; если он не наступил,
+            // задача откладывается и освобождает поток
+            if (!crawl.acquireRequestSlot(url, this)) {
+                deferred = true;
+                return false;
+            }
 
-            logger.info("Обработка URL: {}", url);
-            Connection.Response response = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-                    .referrer("http://www.google.com")
-                    .ignoreContentType(true)
-                    .execute();
+            try {
+                logger.info("Обработка URL: {}", url);
+                // Псевдоним запрашивается целиком: его содержимое не сохранено, а оригинал мог измениться или исчезнуть
+                FetchResult result = previous == null || previous.aliasOf() != null
+                        ? pageFetcher.fetch(url)
+                        : pageFetcher.fetch(url, previous.etag(), previous.lastModified());
 
-            handleResponse(response);
+                handleResponse(path, previous, result);
 
-        } catch (IOException e) {
-            handleError(e);
+            } catch (IOException e) {
+                handleError(path, previous, e);
+            }
+            return indexingService.isIndexingInProgress();
         } catch (InterruptedException e) {
             logger.warn("Индексация прервана для URL {}: поток остановлен.", url);
             Thread.currentThread().interrupt();
+            return false;
         }
     }
 
-    private void handleResponse(Connection.Response response) throws IOException {
-        String contentType = response.contentType();
-        int statusCode = response.statusCode();
-        String path = new URL(url).getPath();
+    private void processStoredLinks(String path) throws InterruptedException {
+        Page stored = crawl.getServices().getPageRepository()
+                .findByPathAndSiteId(path, site.getId())
+                .orElse(null);
+        if (stored != null && PageFetcher.isHtml(stored.getContentType())) {
+            processLinks(Jsoup.parse(crawl.getServices().getPageContents().html(stored), url));
+        }
+    }
 
-        // Проверка на уникальность страницы
-        if (pageRepository.existsByPathAndSiteId(path, site.getId())) {
-            logger.info("Страница {} уже существует. Пропускаем сохранение.", url);
+    private void handleResponse(String path, PageSnapshot previous, FetchResult result)
+            throws IOException, InterruptedException {
+        if (result.isNotModified() && previous != null) {
+            // Страница не изменилась: ссылки берем из сохраненной копии
+            logger.debug("Страница {} не изменилась (304).", url);
+            // В ответе 304 сервер может прислать новые валидаторы; отсутствующие остаются прежними
+            updateValidators(previous, result.etag() != null ? result.etag() : previous.etag(),
+                    result.lastModified() != null ? result.lastModified() : previous.lastModified());
+            crawl.getServices().getPageRepository().findById(previous.id())
+                    .filter(stored -> PageFetcher.isHtml(stored.getContentType()))
+                    .map(stored -> Jsoup.parse(crawl.getServices().getPageContents().html(stored), url))
+                    .ifPresent(this::processLinksQuietly);
             return;
         }
 
+        String contentType = result.contentType();
+        int statusCode = result.statusCode();
+
         Page page = new Page();
         page.setSite(site);
         page.setPath(path);
         page.setCode(statusCode);
+        page.setContentType(contentType);
+        page.setEtag(result.etag());
+        page.setLastModified(result.lastModified());
 
+        Document document = null;
         if (contentType != null && contentType.startsWith("image/")) {
             page.setContent("Image content: " + contentType);
             logger.info("Изображение добавлено: {}", url);
-        } else if (contentType != null && contentType.contains("text/html")) {
-            Document document = response.parse();
+        } else if (result.isHtml()) {
+            document = result.parse();
             page.setContent(document.html());
+            page.setText(document.text());
+            page.setTitle(document.title());
             logger.info("HTML-страница добавлена: {}", url);
-            processLinks(document);
+        } else if (result.isSkipped() && PageFetcher.isHtml(contentType)) {
+            page.setContent("Skipped content: " + contentType + " (" + result.skipReason() + ")");
+            logger.info("Тело страницы {} не загружено: {}", url, result.skipReason());
         } else {
             page.setContent("Unhandled content type: " + contentType);
             logger.info("Контент с неизвестным типом добавлен: {}", url);
         }
+        page.setContentHash(ContentHash.of(document != null ? page.getText() : page.getContent()));
+
+        if (previous != null) {
+            page.setId(previous.id());
+        }
+        String original = null;
+        if (document != null && statusCode < 400) {
+            SimHash.Fingerprint fingerprint = SimHash.of(page.getText());
+            if (crawl.getNearDuplicates().accepts(fingerprint)) {
+                page.setSimhash(fingerprint.hash());
+            }
+            original = crawl.findNearDuplicate(fingerprint, path, previous);
+        }
+        if (original != null) {
+            // Почти дубликат уже обойденной страницы: сохраняем как псевдоним без содержимого и не индексируем
+            logger.info("Страница {} почти совпадает с {}, сохранена как псевдоним.", url, original);
+            page.setAliasOf(original);
+            page.setContent("");
+            page.setText("");
+            pageWriter.write(page, false);
+        } else if (previous != null && previous.aliasOf() == null && page.getContentHash().equals(previous.contentHash())) {
+            // Текст не изменился, лемматизация и запись не нужны. Бывший псевдоним записывается заново:
+            // его содержимое не сохранялось, а строк index у него нет
+            logger.debug("Содержимое страницы {} не изменилось.", url);
+            // Иначе следующий обход отправит устаревшие валидаторы и снова получит страницу целиком
+            updateValidators(previous, result.etag(), result.lastModified());
+        } else {
+            // Запись и лемматизация выполняются отдельными стадиями, поток краулера сразу переходит к ссылкам
+            pageWriter.write(page, document != null && statusCode < 400);
+        }
+
+        if (document != null) {
+            processLinks(document);
+        }
+    }
+
+    private void updateValidators(PageSnapshot previous, String etag, String lastModified) {
+        if (!Objects.equals(etag, previous.etag()) || !Objects.equals(lastModified, previous.lastModified())) {
+            crawl.getServices().getPageRepository().updateValidators(previous.id(), etag, lastModified);
+        }
+    }
 
-        pageRepository.save(page);
+    private void processLinksQuietly(Document document) {
+        try {
+            processLinks(document);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void processLinks(Document document) {
+    private void processLinks(Document document) throws InterruptedException {
         Elements links = document.select("a[href]");
-        List<PageCrawler> subtasks = new ArrayList<>();
         for (Element link : links) {
             if (!checkAndLogStopCondition("При обработке ссылок")) return;
 
             String childUrl = link.absUrl("href");
-
-            // Проверяем, что ссылка принадлежит корневому сайту
-            if (!childUrl.startsWith(site.getUrl())) {
-                logger.debug("Ссылка {} находится за пределами корневого сайта. Пропускаем.", childUrl);
-                continue;
-            }
-
-            // Обработка JavaScript ссылок
-            if (childUrl.startsWith("javascript:")) {
-                logger.info("Обнаружена JavaScript ссылка: {}", childUrl);
-                saveJavaScriptLink(childUrl);
-                continue;
-            }
-
-            // Обработка tel: ссылок
-            if (childUrl.startsWith("tel:")) {
-                logger.info("Обнаружена телефонная ссылка: {}", childUrl);
-                savePhoneLink(childUrl);
-                continue;
+            switch (classifyLink(childUrl, site.getUrl(), crawl::isAllowed)) {
+                case JAVASCRIPT -> {
+                    logger.info("Обнаружена JavaScript ссылка: {}", childUrl);
+                    saveJavaScriptLink(childUrl);
+                }
+                case PHONE -> {
+                    logger.info("Обнаружена телефонная ссылка: {}", childUrl);
+                    savePhoneLink(childUrl);
+                }
+                case EXTERNAL -> logger.debug("Ссылка {} находится за пределами корневого сайта. Пропускаем.", childUrl);
+                case DISALLOWED -> logger.debug("Ссылка {} запрещена robots.txt. Пропускаем.", childUrl);
+                case PAGE -> {
+                    if (crawl.markVisited(childUrl)) {
+                        crawl.enqueue(childUrl);
+                        logger.debug("Добавлена ссылка в обработку: {}", childUrl);
+                    } else {
+                        logger.debug("Ссылка уже обработана: {}", childUrl);
+                    }
+                }
             }
+        }
+    }
 
-            String childPath = null;
-            try {
-                childPath = new URL(childUrl).getPath();
-            } catch (Exception e) {
-                logger.warn("Ошибка извлечения пути из URL: {}", childUrl);
-            }
+    public enum LinkKind {
+        JAVASCRIPT,
+        PHONE,
+        // За пределами корневого сайта
+        EXTERNAL,
+        // Запрещена robots.txt
+        DISALLOWED,
+        PAGE
+    }
 
-            synchronized (visitedUrls) {
-                if (childPath != null && !visitedUrls.contains(childPath)) {
-                    visitedUrls.add(childPath);
-                    subtasks.add(new PageCrawler(site, childUrl, visitedUrls, pageRepository, indexingService));
-                    logger.debug("Добавлена ссылка в обработку: {}", childUrl);
-                } else {
-                    logger.debug("Ссылка уже обработана: {}", childUrl);
-                }
-            }
+    /**
+     * Вид абсолютной ссылки страницы сайта siteUrl. JavaScript- и tel:-ссылки не начинаются
+     * с адреса сайта, поэтому проверяются до отсева чужих ссылок. Используется и бенчмарком
+     * разбора ссылок, чтобы порядок проверок совпадал с обходом.
+     */
+    public static LinkKind classifyLink(String childUrl, String siteUrl, Predicate<String> allowed) {
+        if (childUrl.startsWith("javascript:")) {
+            return LinkKind.JAVASCRIPT;
         }
-        invokeAll(subtasks);
+        if (childUrl.startsWith("tel:")) {
+            return LinkKind.PHONE;
+        }
+        if (!childUrl.startsWith(siteUrl)) {
+            return LinkKind.EXTERNAL;
+        }
+        return allowed.test(childUrl) ? LinkKind.PAGE : LinkKind.DISALLOWED;
     }
 
-    private void savePhoneLink(String telUrl) {
+    private void savePhoneLink(String telUrl) throws InterruptedException {
         String phoneNumber = telUrl.substring(4); // Убираем "tel:"
-        if (pageRepository.existsByPathAndSiteId(phoneNumber, site.getId())) {
+        if (!crawl.claimPath(phoneNumber)) {
             logger.info("Телефонный номер {} уже сохранён. Пропускаем.", phoneNumber);
             return;
         }
+        if (crawl.takePreviousPage(phoneNumber).isPresent()) {
+            return; // Ссылка сохранена при прошлом обходе
+        }
 
         Page page = new Page();
         page.setSite(site);
         page.setPath(phoneNumber);
         page.setCode(0); // Код 0 для телефонных ссылок
         page.setContent("Телефонный номер: " + phoneNumber);
-        pageRepository.save(page);
+        pageWriter.write(page, false);
 
         logger.info("Сохранён телефонный номер: {}", phoneNumber);
     }
 
-    private void saveJavaScriptLink(String jsUrl) {
-        if (pageRepository.existsByPathAndSiteId(jsUrl, site.getId())) {
+    private void saveJavaScriptLink(String jsUrl) throws InterruptedException {
+        if (!crawl.claimPath(jsUrl)) {
             logger.info("JavaScript ссылка {} уже сохранена. Пропускаем.", jsUrl);
             return;
         }
+        if (crawl.takePreviousPage(jsUrl).isPresent()) {
+            return; // Ссылка сохранена при прошлом обходе
+        }
 
         Page page = new Page();
         page.setSite(site);
         page.setPath(jsUrl); // Сохраняем полный jsUrl как path
         page.setCode(0); // Код 0 для JavaScript ссылок
         page.setContent("JavaScript ссылка: " + jsUrl);
-        pageRepository.save(page);
+        pageWriter.write(page, false);
 
         logger.info("Сохранена JavaScript ссылка: {}", jsUrl);
     }
 
-    private void handleError(IOException e) {
+    private void handleError(String path, PageSnapshot previous, IOException e) throws InterruptedException {
         logger.warn("Ошибка обработки URL {}: {}", url, e.getMessage());
+        if (previous != null) {
+            // Сохраненная копия остается, страница будет проверена при следующем обходе
+            return;
+        }
         Page page = new Page();
         page.setSite(site);
-        page.setPath(url);
+        page.setPath(path);
         page.setCode(0);
         page.setContent("Ошибка обработки: " + e.getMessage());
-        pageRepository.save(page);
+        pageWriter.write(page, false);
     }
 
     private boolean checkAndLogStopCondition(String stage) {
@@ -0,0 +1,236 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import org.jsoup.HttpStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.FetchSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Загрузка страниц. Если известны ETag или Last-Modified сохраненной копии,
+ * запрос отправляется условным, и неизмененная страница приходит ответом 304 без тела.
+ * Тело читается только у индексируемых типов содержимого и не больше max-body-bytes:
+ * решение принимается по заголовкам до чтения тела, а для URL с расширением двоичного файла
+ * выполняется запрос HEAD. Пропущенное тело не загружается в память.
+ * Время запроса, код ответа и размер тела учитываются в {@link CrawlMetrics}.
+ * Запросы выполняет {@link FetchClient}, выбранный indexing-settings.fetch.client;
+ * ответы с кодом 400 и выше завершаются {@link HttpStatusException} независимо от клиента.
+ */
+@Component
+public class PageFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageFetcher.class);
+
+    private final FetchSettings settings;
+    private final CrawlMetrics metrics;
+    private final FetchClient client;
+    private final Set<String> binaryExtensions;
+
+    public PageFetcher(FetchSettings settings, CrawlMetrics metrics) {
+        this.settings = settings;
+        this.metrics = metrics;
+        this.client = switch (settings.getClient()) {
+            case HTTP_CLIENT -> new HttpClientFetchClient(settings.getUserAgent(), settings.getConnectTimeoutMs(),
+                    settings.getRequestTimeoutMs(), settings.getMaxConnectionsPerHost());
+            case JSOUP -> new JsoupFetchClient(settings.getUserAgent(), settings.getRequestTimeoutMs());
+        };
+        this.binaryExtensions = settings.getBinaryExtensions().stream()
+                .map(extension -> extension.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        logger.info("Загрузка страниц: клиент {}.", settings.getClient());
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+
+    public FetchResult fetch(String url) throws IOException {
+        return fetch(url, null, null);
+    }
+
+    public FetchResult fetch(String url, String etag, String lastModified) throws IOException {
+        long started = System.nanoTime();
+        try {
+            FetchResult result = execute(url, etag, lastModified);
+            metrics.pageFetched(url, result.statusCode(), System.nanoTime() - started,
+                    result.body() == null ? 0 : result.body().length);
+            return result;
+        } catch (HttpStatusException e) {
+            metrics.pageFetched(url, e.getStatusCode(), System.nanoTime() - started, 0);
+            throw e;
+        } catch (IOException e) {
+            metrics.fetchFailed(url, System.nanoTime() - started);
+            throw e;
+        }
+    }
+
+    /**
+     * Загружает служебный ресурс сайта (robots.txt, карту сайта) без проверки типа содержимого
+     * и передает поток тела читателю; поток закрывается после возврата из читателя.
+     */
+    public <T> T fetchResource(String url, ResourceReader<T> reader) throws IOException {
+        long started = System.nanoTime();
+        try (FetchClient.Response response = client.execute(url, "GET", Map.of())) {
+            checkStatus(response);
+            metrics.pageFetched(url, response.statusCode(), System.nanoTime() - started, 0);
+            return reader.read(response.body(), response.header("Content-Type"));
+        } catch (HttpStatusException e) {
+            metrics.pageFetched(url, e.getStatusCode(), System.nanoTime() - started, 0);
+            throw e;
+        } catch (IOException e) {
+            metrics.fetchFailed(url, System.nanoTime() - started);
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ResourceReader<T> {
+        T read(InputStream body, String contentType) throws IOException;
+    }
+
+    private FetchResult execute(String url, String etag, String lastModified) throws IOException {
+        if (hasBinaryExtension(url)) {
+            FetchResult probe = probe(url);
+            if (probe != null) {
+                return probe;
+            }
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+
+        // Клиент возвращает ответ до чтения тела: здесь получены только статус и заголовки
+        try (FetchClient.Response response = client.execute(url, "GET", headers)) {
+            checkStatus(response);
+            if (response.statusCode() == 304) {
+                return result(response, null, null);
+            }
+            String skipReason = skipReason(response);
+            if (skipReason != null) {
+                return result(response, null, skipReason);
+            }
+
+            byte[] body = readLimited(response.body());
+            if (body == null) {
+                return result(response, null, "тело больше " + settings.getMaxBodyBytes() + " байт");
+            }
+            return result(response, body, null);
+        }
+    }
+
+    // Запрос HEAD для URL, похожего на двоичный файл; null — если тип содержимого все же индексируемый
+    private FetchResult probe(String url) throws IOException {
+        try (FetchClient.Response response = client.execute(url, "HEAD", Map.of())) {
+            if (response.statusCode() >= 400 || isIndexable(response.header("Content-Type"))) {
+                // Некоторые серверы не поддерживают HEAD; решение примем по заголовкам GET
+                return null;
+            }
+            return result(response, null, "тип содержимого определен запросом HEAD");
+        } catch (IOException e) {
+            logger.debug("HEAD {} не выполнен: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void checkStatus(FetchClient.Response response) throws HttpStatusException {
+        if (response.statusCode() >= 400) {
+            throw new HttpStatusException("HTTP error fetching URL", response.statusCode(), response.url());
+        }
+    }
+
+    private String skipReason(FetchClient.Response response) {
+        if (!isIndexable(response.header("Content-Type"))) {
+            return "тип содержимого не индексируется";
+        }
+        String contentLength = response.header("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > settings.getMaxBodyBytes()) {
+                    return "Content-Length " + contentLength.trim() + " больше " + settings.getMaxBodyBytes() + " байт";
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Некорректный Content-Length: {}", contentLength);
+            }
+        }
+        return null;
+    }
+
+    // Читает тело не больше max-body-bytes; при превышении чтение прерывается и возвращается null
+    private byte[] readLimited(InputStream in) throws IOException {
+        long limit = settings.getMaxBodyBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > limit) {
+                return null;
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    // HTML-документ ли это по Content-Type, включая XHTML
+    public static boolean isHtml(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("html");
+    }
+
+    private boolean isIndexable(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return settings.getIndexableTypes().stream().anyMatch(type::startsWith);
+    }
+
+    private boolean hasBinaryExtension(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        int fragment = url.indexOf('#');
+        if (query >= 0) end = Math.min(end, query);
+        if (fragment >= 0) end = Math.min(end, fragment);
+        int slash = url.lastIndexOf('/', end - 1);
+        int dot = url.lastIndexOf('.', end - 1);
+        if (dot <= slash) {
+            return false;
+        }
+        return binaryExtensions.contains(url.substring(dot + 1, end).toLowerCase(Locale.ROOT));
+    }
+
+    private static FetchResult result(FetchClient.Response response, byte[] body, String skipReason) {
+        String contentType = response.header("Content-Type");
+        return new FetchResult(response.url(), response.statusCode(), contentType, body, charsetOf(contentType),
+                response.header("ETag"), response.header("Last-Modified"), skipReason);
+    }
+
+    // Кодировка из параметра charset заголовка Content-Type; null — пусть Jsoup определит сам
+    private static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                String charset = trimmed.substring(8).replace("\"", "").replace("'", "").trim();
+                return charset.isEmpty() ? null : charset;
+            }
+        }
+        return null;
+    }
+}
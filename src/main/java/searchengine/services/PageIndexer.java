@@ -0,0 +1,221 @@
+package searchengine.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SearchSettings;
+import searchengine.model.Page;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Лемматизирует сохраненную страницу и записывает строки index.
+ * Леммы разрешаются через {@link LemmaDictionary}, поэтому на страницу приходится
+ * не более двух пакетных запросов: новые леммы и строки index.
+ * При повторном обходе строки index измененных и исчезнувших страниц снимаются
+ * с уменьшением частот их лемм.
+ * Отдельная страница переиндексируется по разнице со своими строками index:
+ * меняются только исчезнувшие, новые и изменившие ранг или позиции леммы.
+ * Вместе с рангом в строке index хранятся границы первых вхождений леммы
+ * ({@link TokenPositions}), по которым поиск строит фрагменты без лемматизации.
+ */
+@Service
+public class PageIndexer {
+
+    private static final String INSERT_INDEX_SQL = "INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES (?, ?, ?, ?)";
+
+    private static final String SELECT_PAGE_LEMMAS_SQL = "SELECT l.lemma, COUNT(*) FROM `index` i "
+            + "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id IN (:ids) GROUP BY l.lemma";
+    private static final String DELETE_INDEX_SQL = "DELETE FROM `index` WHERE page_id IN (:ids)";
+    private static final String DELETE_PAGES_SQL = "DELETE FROM page WHERE id IN (:ids)";
+    private static final String SELECT_CONTENT_REFS_SQL =
+            "SELECT content_ref FROM page WHERE id IN (:ids) AND content_ref IS NOT NULL";
+    private static final String SELECT_PAGE_INDEX_SQL = "SELECT i.id, i.lemma_id, l.lemma, i.`rank`, i.positions FROM `index` i "
+            + "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = ?";
+    private static final String DELETE_INDEX_ROW_SQL = "DELETE FROM `index` WHERE id = ?";
+    private static final String UPDATE_ROW_SQL = "UPDATE `index` SET `rank` = ?, positions = ? WHERE id = ?";
+    private static final String ADD_FREQUENCY_SQL = "UPDATE lemma SET frequency = frequency + ? WHERE id = ?";
+    // Размер списка IN, чтобы не упираться в max_allowed_packet
+    private static final int CHUNK_SIZE = 1000;
+
+    // Счетчики лемм переиспользуются потоком конвейера от страницы к странице
+    private static final ThreadLocal<LemmaCounts> PAGE_COUNTS = ThreadLocal.withInitial(LemmaCounts::new);
+
+    private final Lemmatizer lemmatizer;
+    private final LemmaDictionary lemmaDictionary;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SiteStatisticsRegistry statisticsRegistry;
+    private final PageContents pageContents;
+    private final CrawlMetrics metrics;
+    private final SearchSettings searchSettings;
+
+    public PageIndexer(Lemmatizer lemmatizer, LemmaDictionary lemmaDictionary, JdbcTemplate jdbcTemplate,
+                       NamedParameterJdbcTemplate namedJdbcTemplate, PlatformTransactionManager transactionManager,
+                       SiteStatisticsRegistry statisticsRegistry, PageContents pageContents,
+                       CrawlMetrics metrics, SearchSettings searchSettings) {
+        this.lemmatizer = lemmatizer;
+        this.lemmaDictionary = lemmaDictionary;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statisticsRegistry = statisticsRegistry;
+        this.pageContents = pageContents;
+        this.metrics = metrics;
+        this.searchSettings = searchSettings;
+    }
+
+    public void index(Page page) {
+        String text = pageContents.text(page);
+        LemmaCounts lemmaCounts = PAGE_COUNTS.get();
+        lemmaCounts.clear();
+        long started = System.nanoTime();
+        int words = lemmatizer.countLemmas(text, lemmaCounts, searchSettings.getStoredPositions());
+        metrics.lemmatized(System.nanoTime() - started, words);
+        if (lemmaCounts.isEmpty()) {
+            return;
+        }
+
+        List<String> lemmas = new ArrayList<>(lemmaCounts.size());
+        lemmaCounts.forEach((lemma, count) -> lemmas.add(lemma));
+        // Леммы, чьи строки не нашлись после вставки, словарь пропускает
+        List<LemmaDictionary.LemmaEntry> entries = lemmaDictionary.resolve(page.getSite().getId(), lemmas);
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (LemmaDictionary.LemmaEntry entry : entries) {
+            rows.add(new Object[]{page.getId(), entry.getId(), (float) lemmaCounts.get(entry.getLemma()),
+                    lemmaCounts.positions(entry.getLemma())});
+        }
+        lemmaCounts.clear();
+        started = System.nanoTime();
+        jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, rows);
+        metrics.batchFlushed("index", rows.size(), System.nanoTime() - started);
+
+        // Частота леммы — число страниц, на которых она встречается
+        entries.forEach(entry -> entry.addFrequency(1));
+        lemmaDictionary.pageIndexed();
+    }
+
+    // Снимает строки index страницы и уменьшает частоты ее лемм
+    public void removeFromIndex(Page page) {
+        transactionTemplate.executeWithoutResult(status -> removeIndexRows(page.getSite().getId(), List.of(page.getId())));
+    }
+
+    // Удаляет исчезнувшие с сайта страницы вместе с их строками index
+    public void removePages(int siteId, List<Integer> pageIds) {
+        for (int from = 0; from < pageIds.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(from + CHUNK_SIZE, pageIds.size()));
+            transactionTemplate.executeWithoutResult(status -> {
+                removeIndexRows(siteId, chunk);
+                List<String> contentRefs = namedJdbcTemplate.queryForList(SELECT_CONTENT_REFS_SQL,
+                        Map.of("ids", chunk), String.class);
+                namedJdbcTemplate.update(DELETE_PAGES_SQL, Map.of("ids", chunk));
+                pageContents.release(contentRefs);
+            });
+            statisticsRegistry.pagesAdded(siteId, -chunk.size());
+        }
+    }
+
+    private void removeIndexRows(int siteId, List<Integer> pageIds) {
+        Map<String, Integer> pageCounts = new HashMap<>();
+        namedJdbcTemplate.query(SELECT_PAGE_LEMMAS_SQL, Map.of("ids", pageIds),
+                rs -> {
+                    pageCounts.put(rs.getString(1), rs.getInt(2));
+                });
+        if (pageCounts.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.update(DELETE_INDEX_SQL, Map.of("ids", pageIds));
+
+        // Частоты уменьшаются через словарь, чтобы не расходиться с накопленными приращениями
+        for (LemmaDictionary.LemmaEntry entry : lemmaDictionary.resolve(siteId, pageCounts.keySet())) {
+            entry.addFrequency(-pageCounts.get(entry.getLemma()));
+        }
+    }
+
+    /**
+     * Леммы страницы для {@link #reindex}; лемматизация выполняется до транзакции,
+     * чтобы не держать блокировку страницы. Неиндексируемой странице соответствует пустой набор.
+     */
+    public LemmaCounts lemmatize(Page page, boolean indexable) {
+        LemmaCounts lemmaCounts = new LemmaCounts();
+        if (indexable) {
+            lemmatizer.countLemmas(pageContents.text(page), lemmaCounts, searchSettings.getStoredPositions());
+        }
+        return lemmaCounts;
+    }
+
+    /**
+     * Переиндексирует одну страницу по разнице с ее текущими строками index.
+     * Чтение прежних строк, удаление, вставка новых, изменение рангов, позиций и частот лемм
+     * выполняются в одной транзакции (или в транзакции вызывающего, который держит блокировку
+     * строки page); частоты меняются в базе напрямую, минуя словарь, в порядке id лемм,
+     * чтобы параллельные переиндексации не блокировали друг друга взаимно.
+     */
+    public void reindex(Page page, LemmaCounts lemmaCounts) {
+        transactionTemplate.executeWithoutResult(status -> applyDiff(page, lemmaCounts));
+    }
+
+    private void applyDiff(Page page, LemmaCounts lemmaCounts) {
+        Map<String, IndexRow> oldRows = new HashMap<>();
+        jdbcTemplate.query(SELECT_PAGE_INDEX_SQL,
+                rs -> {
+                    oldRows.put(rs.getString(3), new IndexRow(rs.getInt(1), rs.getInt(2), rs.getFloat(4), rs.getBytes(5)));
+                },
+                page.getId());
+
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> rowUpdates = new ArrayList<>();
+        List<Object[]> frequencyDeltas = new ArrayList<>();
+        oldRows.forEach((lemma, row) -> {
+            int count = lemmaCounts.get(lemma);
+            byte[] positions = lemmaCounts.positions(lemma);
+            if (count == 0) {
+                deletes.add(new Object[]{row.id()});
+                frequencyDeltas.add(new Object[]{-1, row.lemmaId()});
+            } else if (count != row.rank() || !Arrays.equals(positions, row.positions())) {
+                // Правка текста сдвигает позиции и тех лемм, чей ранг не изменился
+                rowUpdates.add(new Object[]{(float) count, positions, row.id()});
+            }
+        });
+
+        List<String> added = new ArrayList<>();
+        lemmaCounts.forEach((lemma, count) -> {
+            if (!oldRows.containsKey(lemma)) {
+                added.add(lemma);
+            }
+        });
+        Map<String, Integer> lemmaIds = lemmaDictionary.lookupIds(page.getSite().getId(), added);
+        List<Object[]> inserts = new ArrayList<>(added.size());
+        for (String lemma : added) {
+            Integer lemmaId = lemmaIds.get(lemma);
+            if (lemmaId == null) {
+                continue; // Строка леммы не нашлась после вставки
+            }
+            inserts.add(new Object[]{page.getId(), lemmaId, (float) lemmaCounts.get(lemma), lemmaCounts.positions(lemma)});
+            frequencyDeltas.add(new Object[]{1, lemmaId});
+        }
+
+        frequencyDeltas.sort(Comparator.comparingInt(row -> (Integer) row[1]));
+        batchUpdate(DELETE_INDEX_ROW_SQL, deletes);
+        batchUpdate(UPDATE_ROW_SQL, rowUpdates);
+        batchUpdate(INSERT_INDEX_SQL, inserts);
+        batchUpdate(ADD_FREQUENCY_SQL, frequencyDeltas);
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+
+    private record IndexRow(int id, int lemmaId, float rank, byte[] positions) {
+    }
+}
@@ -0,0 +1,56 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пути уже сохраненных страниц по сайтам. При начале обхода реестр сайта заполняется
+ * из базы, дальше проверка дубликата — одна атомарная операция над множеством в памяти
+ * вместо запроса SELECT COUNT на каждую страницу. Уникальность в базе дополнительно
+ * гарантирует ключ (site_id, path).
+ */
+@Component
+public class PagePathRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagePathRegistry.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, Set<String>> pathsBySite = new ConcurrentHashMap<>();
+
+    public PagePathRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Загружает пути страниц сайта из базы
+    public void warmUp(int siteId) {
+        Set<String> paths = ConcurrentHashMap.newKeySet();
+        jdbcTemplate.query("SELECT path FROM page WHERE site_id = ?",
+                rs -> {
+                    paths.add(rs.getString(1));
+                },
+                siteId);
+        pathsBySite.put(siteId, paths);
+        logger.info("Реестр путей сайта {} загружен: {} страниц.", siteId, paths.size());
+    }
+
+    // Резервирует путь; возвращает false, если страница с таким путем уже есть или записывается
+    public boolean claim(int siteId, String path) {
+        return pathsBySite.computeIfAbsent(siteId, id -> ConcurrentHashMap.newKeySet()).add(path);
+    }
+
+    public boolean contains(int siteId, String path) {
+        Set<String> paths = pathsBySite.get(siteId);
+        return paths != null && paths.contains(path);
+    }
+
+    // Освобождает память после завершения обхода сайта
+    public void release(int siteId) {
+        pathsBySite.remove(siteId);
+    }
+}
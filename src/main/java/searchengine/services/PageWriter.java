@@ -0,0 +1,354 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.PageWriterSettings;
+import searchengine.model.Page;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная запись страниц. Потоки краулера кладут страницы в ограниченную очередь,
+ * отдельный поток собирает их в пакеты и записывает многострочными INSERT через JDBC
+ * (rewriteBatchedStatements=true). Пакет сбрасывается при наборе batch-size страниц
+ * или по истечении flush-interval-ms. Записанные HTML-страницы передаются на индексацию.
+ * Страница с уже известным id (повторный обход) обновляется на месте, а ее старые строки index
+ * заменяются на стадии индексации.
+ */
+@Component
+public class PageWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO page "
+            + "(site_id, path, code, content, content_type, etag, last_modified, content_hash, content_ref, title, "
+            + "alias_of, simhash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Для записи по одной: дубликат по ключу (site_id, path) пропускается без ошибки
+    private static final String INSERT_IGNORE_SQL = "INSERT IGNORE INTO page "
+            + "(site_id, path, code, content, content_type, etag, last_modified, content_hash, content_ref, title, "
+            + "alias_of, simhash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE page SET code = ?, content = ?, content_type = ?, "
+            + "etag = ?, last_modified = ?, content_hash = ?, content_ref = ?, title = ?, alias_of = ?, simhash = ? "
+            + "WHERE id = ?";
+    private static final String SELECT_CONTENT_REFS_SQL =
+            "SELECT content_ref FROM page WHERE id IN (:ids) AND content_ref IS NOT NULL";
+
+    private final PageWriterSettings settings;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IndexingPipeline indexingPipeline;
+    private final SiteStatisticsRegistry statisticsRegistry;
+    private final PageContents pageContents;
+    private final CrawlMetrics metrics;
+    private final SitePendingTracker pending = new SitePendingTracker();
+
+    private volatile Writer writer;
+
+    public PageWriter(PageWriterSettings settings, JdbcTemplate jdbcTemplate,
+                      NamedParameterJdbcTemplate namedJdbcTemplate, PlatformTransactionManager transactionManager,
+                      IndexingPipeline indexingPipeline, SiteStatisticsRegistry statisticsRegistry,
+                      PageContents pageContents, CrawlMetrics metrics) {
+        this.settings = settings;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.indexingPipeline = indexingPipeline;
+        this.statisticsRegistry = statisticsRegistry;
+        this.pageContents = pageContents;
+        this.metrics = metrics;
+        metrics.queueGauge("crawl.writer.queue", this, PageWriter::getQueueSize);
+    }
+
+    public synchronized void start() {
+        if (writer != null && writer.running) {
+            return;
+        }
+        writer = new Writer(settings.getQueueCapacity());
+        writer.thread.start();
+        logger.info("Запись страниц запущена: пакет {}, интервал {} мс.",
+                settings.getBatchSize(), settings.getFlushIntervalMs());
+    }
+
+    // Ставит страницу в очередь записи; index=true передает ее на индексацию после сохранения
+    public void write(Page page, boolean index) throws InterruptedException {
+        Writer current = writer;
+        if (current == null || !current.running) {
+            logger.debug("Запись страниц остановлена, страница {} не сохранена.", page.getPath());
+            return;
+        }
+        pending.increment(page.getSite().getId());
+        try {
+            current.queue.put(new PendingPage(page, index, page.getId() != null));
+        } catch (InterruptedException e) {
+            pending.decrement(page.getSite().getId());
+            throw e;
+        }
+    }
+
+    // Ждет записи всех страниц сайта, поставленных в очередь
+    public void awaitSite(int siteId) throws InterruptedException {
+        pending.await(siteId, this::isTerminated);
+    }
+
+    public int getQueueSize() {
+        Writer current = writer;
+        return current == null ? 0 : current.queue.size();
+    }
+
+    // Прекращает прием страниц; оставшиеся в очереди страницы будут записаны
+    public synchronized void stop() {
+        if (writer != null) {
+            writer.running = false;
+        }
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        Writer current = writer;
+        if (current != null) {
+            current.thread.join();
+        }
+    }
+
+    private boolean isTerminated() {
+        Writer current = writer;
+        return current == null || !current.thread.isAlive();
+    }
+
+    private void flush(List<PendingPage> batch) {
+        List<PendingPage> inserts = batch.stream().filter(pendingPage -> !pendingPage.update).toList();
+        List<PendingPage> updates = batch.stream().filter(PendingPage::update).toList();
+        List<String> written = new ArrayList<>();
+        try {
+            long started = System.nanoTime();
+            // Пакет пишется в одной транзакции: при ошибке откатываются все его строки
+            transactionTemplate.executeWithoutResult(status -> {
+                storeContents(batch.stream().map(PendingPage::page).toList(), written);
+                insertBatch(inserts);
+                updateBatch(updates);
+            });
+            metrics.batchFlushed("page", batch.size(), System.nanoTime() - started);
+        } catch (RuntimeException e) {
+            logger.warn("Ошибка пакетной записи {} страниц, запись по одной: {}", batch.size(), e.getMessage());
+            // Откат не удаляет содержимое во внешнем хранилище, на него больше не ссылается ни одна строка
+            pageContents.release(written);
+            for (PendingPage pendingPage : batch) {
+                List<String> rowWritten = new ArrayList<>(1);
+                try {
+                    if (pendingPage.update) {
+                        transactionTemplate.executeWithoutResult(status -> {
+                            storeContents(List.of(pendingPage.page), rowWritten);
+                            updateBatch(List.of(pendingPage));
+                        });
+                    } else {
+                        pendingPage.page.setId(null);
+                        storeContents(List.of(pendingPage.page), rowWritten);
+                        insertSingle(pendingPage);
+                        if (pendingPage.page.getId() == null) {
+                            // Дубликат не записан, его содержимое больше не нужно
+                            pageContents.release(rowWritten);
+                        }
+                    }
+                } catch (RuntimeException rowError) {
+                    logger.warn("Страница {} не сохранена: {}", pendingPage.page.getPath(), rowError.getMessage());
+                    pageContents.release(rowWritten);
+                    if (pendingPage.update) {
+                        pendingPage.page.setId(null);
+                    }
+                }
+            }
+        }
+
+        for (PendingPage pendingPage : batch) {
+            Page page = pendingPage.page;
+            if (page.getId() != null && !pendingPage.update) {
+                statisticsRegistry.pagesAdded(page.getSite().getId(), 1);
+            }
+            try {
+                if (page.getId() != null && pendingPage.update) {
+                    // Старые строки index удаляются и при переиндексации, и если страница перестала индексироваться
+                    indexingPipeline.submit(page, true, pendingPage.index);
+                } else if (page.getId() != null && pendingPage.index) {
+                    indexingPipeline.submit(page);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pending.decrement(page.getSite().getId());
+            }
+        }
+    }
+
+    // Записывает содержимое страниц и запоминает ссылки, чтобы освободить их при откате транзакции
+    private void storeContents(List<Page> pages, List<String> written) {
+        pageContents.store(pages);
+        for (Page page : pages) {
+            if (page.getContentRef() != null) {
+                written.add(page.getContentRef());
+            }
+        }
+    }
+
+    // Обновляет страницы на месте и освобождает замененное содержимое во внешнем хранилище
+    private void updateBatch(List<PendingPage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> replacedRefs = namedJdbcTemplate.queryForList(SELECT_CONTENT_REFS_SQL,
+                Map.of("ids", batch.stream().map(pendingPage -> pendingPage.page.getId()).toList()), String.class);
+        jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Page page = batch.get(i).page;
+                ps.setInt(1, page.getCode());
+                ps.setString(2, pageContents.columnValue(page));
+                ps.setString(3, page.getContentType());
+                ps.setString(4, page.getEtag());
+                ps.setString(5, page.getLastModified());
+                ps.setString(6, page.getContentHash());
+                ps.setString(7, page.getContentRef());
+                ps.setString(8, page.getTitle());
+                ps.setString(9, page.getAliasOf());
+                ps.setObject(10, page.getSimhash(), Types.BIGINT);
+                ps.setInt(11, page.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        pageContents.release(replacedRefs);
+    }
+
+    private void insertBatch(List<PendingPage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Page page = batch.get(i).page;
+                        setPageValues(ps, page);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != batch.size()) {
+            throw new IllegalStateException("Получено " + keys.size() + " ключей для " + batch.size() + " страниц");
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            batch.get(i).page.setId(((Number) key).intValue());
+        }
+    }
+
+    private void insertSingle(PendingPage pendingPage) {
+        Page page = pendingPage.page;
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int inserted = jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_IGNORE_SQL, Statement.RETURN_GENERATED_KEYS);
+            setPageValues(ps, page);
+            return ps;
+        }, keyHolder);
+        if (inserted > 0 && keyHolder.getKey() != null) {
+            page.setId(keyHolder.getKey().intValue());
+        } else {
+            logger.debug("Страница {} уже существует, запись пропущена.", page.getPath());
+        }
+    }
+
+    private void setPageValues(PreparedStatement ps, Page page) throws SQLException {
+        ps.setInt(1, page.getSite().getId());
+        ps.setString(2, page.getPath());
+        ps.setInt(3, page.getCode());
+        ps.setString(4, pageContents.columnValue(page));
+        ps.setString(5, page.getContentType());
+        ps.setString(6, page.getEtag());
+        ps.setString(7, page.getLastModified());
+        ps.setString(8, page.getContentHash());
+        ps.setString(9, page.getContentRef());
+        ps.setString(10, page.getTitle());
+        ps.setString(11, page.getAliasOf());
+        ps.setObject(12, page.getSimhash(), Types.BIGINT);
+    }
+
+    private record PendingPage(Page page, boolean index, boolean update) {
+    }
+
+    // Очередь и поток записи одного запуска индексации
+    private class Writer implements Runnable {
+        private final BlockingQueue<PendingPage> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Writer(int queueCapacity) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            thread = new Thread(this, "page-writer");
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long startedNanos = System.nanoTime();
+            long written = 0;
+            List<PendingPage> batch = new ArrayList<>(settings.getBatchSize());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getFlushIntervalMs());
+            while (running || !queue.isEmpty()) {
+                try {
+                    long waitNanos = deadline - System.nanoTime();
+                    PendingPage next = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next != null) {
+                        batch.add(next);
+                        queue.drainTo(batch, settings.getBatchSize() - batch.size());
+                    }
+                } catch (InterruptedException e) {
+                    // Остановка потока не должна терять накопленные страницы
+                    running = false;
+                }
+                if (batch.size() >= settings.getBatchSize() || System.nanoTime() - deadline >= 0 || !running) {
+                    if (!batch.isEmpty()) {
+                        flush(batch);
+                        written += batch.size();
+                        batch = new ArrayList<>(settings.getBatchSize());
+                    }
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getFlushIntervalMs());
+                }
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                written += batch.size();
+            }
+            // Пропускная способность записи для сравнения способов хранения содержимого
+            double seconds = Math.max(1e-3, (System.nanoTime() - startedNanos) / 1e9);
+            logger.info("Запись страниц остановлена, очередь записана: {} страниц за {} с ({} стр/с).",
+                    written, String.format("%.1f", seconds), String.format("%.1f", written / seconds));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package searchengine.services;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Правила robots.txt для одного робота (RFC 9309). Из имени робота берется токен продукта
+ * (часть до «/» или пробела); выбирается группа с самым длинным значением User-agent,
+ * с которого начинается токен, иначе группа «*». Группы с одинаковым значением объединяются.
+ * Для пути действует правило с самым длинным шаблоном, при равной длине побеждает Allow.
+ * В шаблонах поддерживаются «*» и «$» в конце.
+ */
+public final class RobotsRules {
+
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), 0, List.of());
+    private static final RobotsRules UNREACHABLE = new RobotsRules(List.of(new Rule("/", false)), 0, List.of());
+
+    private final List<Rule> rules;
+    private final long crawlDelayMs;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMs, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMs = crawlDelayMs;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    // robots.txt не получен из-за ошибки сервера или сети: до его появления запрещено все
+    public static RobotsRules unreachable() {
+        return UNREACHABLE;
+    }
+
+    public boolean isUnreachable() {
+        return this == UNREACHABLE;
+    }
+
+    public static RobotsRules parse(String text, String agent) {
+        String productToken = productToken(agent);
+        List<Group> groups = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+
+        // Строки User-agent подряд относятся к одной группе, следующая после правил начинает новую
+        Group group = null;
+        boolean inAgentLines = false;
+
+        for (String rawLine : text.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent" -> {
+                    if (!inAgentLines) {
+                        group = new Group();
+                        groups.add(group);
+                        inAgentLines = true;
+                    }
+                    group.agents.add(value.toLowerCase(Locale.ROOT));
+                }
+                case "allow", "disallow" -> {
+                    inAgentLines = false;
+                    if (group == null || value.isEmpty()) {
+                        continue; // Пустой Disallow ничего не запрещает
+                    }
+                    group.rules.add(new Rule(value, key.equals("allow")));
+                }
+                case "crawl-delay" -> {
+                    inAgentLines = false;
+                    if (group != null) {
+                        group.delay = parseDelay(value);
+                    }
+                }
+                case "sitemap" -> sitemaps.add(value);
+                default -> inAgentLines = false;
+            }
+        }
+
+        String selected = "*";
+        for (Group candidate : groups) {
+            for (String groupAgent : candidate.agents) {
+                if (!groupAgent.isEmpty() && !groupAgent.equals("*") && productToken.startsWith(groupAgent)
+                        && (selected.equals("*") || groupAgent.length() > selected.length())) {
+                    selected = groupAgent;
+                }
+            }
+        }
+        List<Rule> rules = new ArrayList<>();
+        double delay = -1;
+        for (Group candidate : groups) {
+            if (candidate.agents.contains(selected)) {
+                rules.addAll(candidate.rules);
+                if (delay <= 0) {
+                    delay = candidate.delay;
+                }
+            }
+        }
+        return new RobotsRules(List.copyOf(rules), delay > 0 ? Math.round(delay * 1000) : 0, List.copyOf(sitemaps));
+    }
+
+    public boolean isAllowed(String url) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+        String path;
+        try {
+            URI uri = URI.create(url);
+            path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path = path + "?" + uri.getRawQuery();
+            }
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null || rule.length() > best.length()
+                    || rule.length() == best.length() && rule.allow)) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    // Задержка между запросами из Crawl-delay; 0 — не указана
+    public long getCrawlDelayMs() {
+        return crawlDelayMs;
+    }
+
+    // Адреса карт сайта из строк Sitemap
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    // Токен продукта из имени робота: «SearchEngineBot/1.0 (+url)» → «searchenginebot»
+    private static String productToken(String agent) {
+        String token = agent.trim().toLowerCase(Locale.ROOT);
+        int end = 0;
+        while (end < token.length()) {
+            char c = token.charAt(end);
+            if (!(c >= 'a' && c <= 'z' || c == '-' || c == '_')) {
+                break;
+            }
+            end++;
+        }
+        return token.substring(0, end);
+    }
+
+    private static double parseDelay(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Group {
+        private final List<String> agents = new ArrayList<>();
+        private final List<Rule> rules = new ArrayList<>();
+        private double delay = -1;
+    }
+
+    private record Rule(String pattern, boolean allow) {
+
+        int length() {
+            return pattern.length();
+        }
+
+        /**
+         * Сопоставление за O(длина пути × длина шаблона), как в эталонной реализации RFC 9309:
+         * хранится множество позиций пути, до которых совпал уже разобранный префикс шаблона.
+         * Без «$» в конце шаблон совпадает с началом пути.
+         */
+        boolean matches(String path) {
+            int pathLength = path.length();
+            int[] positions = new int[pathLength + 1];
+            int count = 1;
+            for (int p = 0; p < pattern.length(); p++) {
+                char c = pattern.charAt(p);
+                if (c == '$' && p == pattern.length() - 1) {
+                    return positions[count - 1] == pathLength;
+                }
+                if (c == '*') {
+                    // «*» продолжает совпадение с любой позиции не левее самой ранней
+                    count = pathLength - positions[0] + 1;
+                    for (int i = 1; i < count; i++) {
+                        positions[i] = positions[i - 1] + 1;
+                    }
+                } else {
+                    int next = 0;
+                    for (int i = 0; i < count; i++) {
+                        if (positions[i] < pathLength && path.charAt(positions[i]) == c) {
+                            positions[next++] = positions[i] + 1;
+                        }
+                    }
+                    if (next == 0) {
+                        return false;
+                    }
+                    count = next;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResultItem;
+import searchengine.model.Site;
+import searchengine.repository.SiteRepository;
+
+import java.util.*;
+
+/**
+ * Поиск по таблицам lemma/index. Слово запроса найдено на странице, если на ней есть хотя бы
+ * одна из его лемм (омонимы). Слова, встречающиеся на слишком большой доле страниц, отбрасываются;
+ * кандидаты — страницы самого редкого слова, на которых есть остальные, отбираются одним запросом.
+ * Фрагменты строятся по позициям слов из строк index, без лемматизации текста страниц.
+ */
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SiteRepository siteRepository;
+    private final Lemmatizer lemmatizer;
+    private final SnippetBuilder snippetBuilder;
+    private final SearchSettings settings;
+    private final SiteStatisticsRegistry statisticsRegistry;
+    private final PageContents pageContents;
+
+    public SearchServiceImpl(NamedParameterJdbcTemplate jdbcTemplate, SiteRepository siteRepository,
+                             Lemmatizer lemmatizer, SnippetBuilder snippetBuilder, SearchSettings settings,
+                             SiteStatisticsRegistry statisticsRegistry, PageContents pageContents) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.siteRepository = siteRepository;
+        this.lemmatizer = lemmatizer;
+        this.snippetBuilder = snippetBuilder;
+        this.settings = settings;
+        this.statisticsRegistry = statisticsRegistry;
+        this.pageContents = pageContents;
+    }
+
+    @Override
+    public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+        if (query == null || query.isBlank()) {
+            return error("Задан пустой поисковый запрос");
+        }
+
+        List<Site> sites;
+        if (siteUrl != null && !siteUrl.isBlank()) {
+            Site site = siteRepository.findByUrl(siteUrl);
+            if (site == null) {
+                return error("Указанный сайт не найден");
+            }
+            sites = List.of(site);
+        } else {
+            sites = siteRepository.findAllByLiveTrue();
+        }
+
+        List<Set<String>> lemmaGroups = lemmatizer.collectLemmaGroups(query);
+        Set<String> queryLemmas = new HashSet<>();
+        lemmaGroups.forEach(queryLemmas::addAll);
+        List<PageScore> scores = new ArrayList<>();
+        if (!queryLemmas.isEmpty()) {
+            for (Site site : sites) {
+                scores.addAll(searchSite(site.getId(), lemmaGroups, queryLemmas));
+            }
+        }
+        scores.sort(Comparator.comparingDouble(PageScore::relevance).reversed()
+                .thenComparingInt(PageScore::pageId));
+
+        SearchResponse response = new SearchResponse();
+        response.setResult(true);
+        response.setCount(scores.size());
+        int from = Math.min(Math.max(offset, 0), scores.size());
+        int to = Math.min(from + Math.max(limit, 0), scores.size());
+        double maxRelevance = scores.isEmpty() ? 1 : scores.get(0).relevance();
+        response.setData(buildItems(scores.subList(from, to), maxRelevance, queryLemmas));
+        return response;
+    }
+
+    private List<PageScore> searchSite(int siteId, List<Set<String>> lemmaGroups, Set<String> queryLemmas) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("siteId", siteId)
+                .addValue("lemmas", queryLemmas);
+        // lemma.lemma сравнивается двоично: найденные строки совпадают с леммами запроса посимвольно
+        Map<String, SiteLemma> lemmas = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, lemma, frequency FROM lemma WHERE site_id = :siteId AND lemma IN (:lemmas)",
+                params, rs -> {
+                    lemmas.put(rs.getString(2), new SiteLemma(rs.getInt(1), rs.getInt(3)));
+                });
+
+        // Слово запроса найдено на странице, если на ней есть хотя бы одна из его лемм
+        List<WordLemmas> words = new ArrayList<>(lemmaGroups.size());
+        for (Set<String> group : lemmaGroups) {
+            List<Integer> ids = new ArrayList<>();
+            int frequency = 0;
+            for (String lemma : group) {
+                SiteLemma siteLemma = lemmas.get(lemma);
+                if (siteLemma != null) {
+                    ids.add(siteLemma.id());
+                    frequency += siteLemma.frequency();
+                }
+            }
+            // Если какого-то слова нет на сайте, ни одна страница не содержит все слова запроса
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            words.add(new WordLemmas(ids, frequency));
+        }
+
+        long pageCount = statisticsRegistry.getPages(siteId);
+        List<WordLemmas> plan = words.stream()
+                .filter(word -> pageCount == 0 || (double) word.frequency() / pageCount <= settings.getMaxLemmaPageShare())
+                .sorted(Comparator.comparingInt(WordLemmas::frequency))
+                .toList();
+        if (plan.isEmpty()) {
+            // Все слова слишком частые: ищем по самому редкому из них
+            plan = List.of(words.stream().min(Comparator.comparingInt(WordLemmas::frequency)).orElseThrow());
+        }
+
+        // Кандидаты — страницы самого редкого слова, на которых есть и остальные слова плана;
+        // релевантность считается по всем леммам запроса
+        MapSqlParameterSource scoreParams = new MapSqlParameterSource("lemmas",
+                lemmas.values().stream().map(SiteLemma::id).toList())
+                .addValue("word0", plan.get(0).ids());
+        StringBuilder sql = new StringBuilder(
+                "SELECT i.page_id, SUM(i.`rank`) FROM `index` i WHERE i.lemma_id IN (:lemmas) AND i.page_id IN (" +
+                        "SELECT c.page_id FROM `index` c WHERE c.lemma_id IN (:word0)");
+        for (int w = 1; w < plan.size(); w++) {
+            sql.append(" AND EXISTS (SELECT 1 FROM `index` x").append(w)
+                    .append(" WHERE x").append(w).append(".page_id = c.page_id AND x").append(w)
+                    .append(".lemma_id IN (:word").append(w).append("))");
+            scoreParams.addValue("word" + w, plan.get(w).ids());
+        }
+        sql.append(") GROUP BY i.page_id");
+        return jdbcTemplate.query(sql.toString(), scoreParams,
+                (rs, i) -> new PageScore(rs.getInt(1), rs.getDouble(2)));
+    }
+
+    private List<SearchResultItem> buildItems(List<PageScore> window, double maxRelevance, Set<String> queryLemmas) {
+        if (window.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, SearchResultItem> items = new HashMap<>();
+        Map<Integer, String> texts = new HashMap<>();
+        Map<Integer, String> contentRefs = new HashMap<>();
+        Map<Integer, String> contentHashes = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT p.id, p.path, p.content, s.url, s.name, p.content_ref, p.title, p.content_hash " +
+                        "FROM page p JOIN site s ON s.id = p.site_id " +
+                        "WHERE p.id IN (:pages)",
+                new MapSqlParameterSource("pages", window.stream().map(PageScore::pageId).toList()),
+                rs -> {
+                    String title = rs.getString(7);
+                    String contentRef = rs.getString(6);
+                    if (contentRef != null) {
+                        contentRefs.put(rs.getInt(1), contentRef);
+                    } else {
+                        Document document = Jsoup.parse(rs.getString(3));
+                        texts.put(rs.getInt(1), document.text());
+                        title = title != null ? title : document.title();
+                    }
+                    contentHashes.put(rs.getInt(1), rs.getString(8));
+                    SearchResultItem item = new SearchResultItem();
+                    item.setSite(rs.getString(4));
+                    item.setSiteName(rs.getString(5));
+                    item.setUri(rs.getString(2));
+                    item.setTitle(title == null ? "" : title);
+                    items.put(rs.getInt(1), item);
+                });
+
+        // Текст страниц во внешнем хранилище читается одним обращением, HTML для выдачи не нужен
+        Map<String, String> storedTexts = pageContents.texts(contentRefs.values());
+        contentRefs.forEach((pageId, ref) -> texts.put(pageId, storedTexts.getOrDefault(ref, "")));
+        Map<Integer, List<int[]>> positions = loadPositions(items.keySet(), queryLemmas);
+        items.forEach((pageId, item) -> {
+            String text = texts.get(pageId);
+            List<int[]> pagePositions = positions.get(pageId);
+            // Позиции считались по тексту при индексации; текст, заново извлеченный из HTML,
+            // может отличаться от него, и тогда смещения попадут не на те слова
+            if (pagePositions != null && !ContentHash.of(text).equals(contentHashes.get(pageId))) {
+                pagePositions = null;
+            }
+            item.setSnippet(snippetBuilder.build(text, pagePositions, queryLemmas));
+        });
+
+        List<SearchResultItem> result = new ArrayList<>(window.size());
+        for (PageScore score : window) {
+            SearchResultItem item = items.get(score.pageId());
+            if (item != null) {
+                item.setRelevance(score.relevance() / maxRelevance);
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    // Позиции слов запроса по страницам; страницы со строками без позиций в результат не попадают
+    private Map<Integer, List<int[]>> loadPositions(Collection<Integer> pageIds, Set<String> queryLemmas) {
+        Map<Integer, List<int[]>> positions = new HashMap<>();
+        Set<Integer> incomplete = new HashSet<>();
+        jdbcTemplate.query(
+                "SELECT i.page_id, i.positions FROM `index` i JOIN lemma l ON l.id = i.lemma_id " +
+                        "WHERE i.page_id IN (:pages) AND l.lemma IN (:lemmas)",
+                new MapSqlParameterSource("pages", pageIds).addValue("lemmas", queryLemmas),
+                rs -> {
+                    int pageId = rs.getInt(1);
+                    byte[] data = rs.getBytes(2);
+                    List<int[]> pagePositions = positions.computeIfAbsent(pageId, id -> new ArrayList<>());
+                    if (data == null || !TokenPositions.decode(data, pagePositions)) {
+                        incomplete.add(pageId);
+                    }
+                });
+        positions.keySet().removeAll(incomplete);
+        return positions;
+    }
+
+    private static SearchResponse error(String message) {
+        SearchResponse response = new SearchResponse();
+        response.setResult(false);
+        response.setError(message);
+        return response;
+    }
+
+    private record SiteLemma(int id, int frequency) {
+    }
+
+    // Леммы одного слова запроса на сайте и их суммарная частота
+    private record WordLemmas(List<Integer> ids, int frequency) {
+    }
+
+    private record PageScore(int pageId, double relevance) {
+    }
+}
@@ -0,0 +1,289 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Общий пул потоков обхода для всех сайтов: число потоков задается global-workers
+ * и не зависит от количества сайтов. У каждого сайта своя очередь задач, представленная
+ * как {@link ExecutorService}; свободный поток берет задачу из очереди того сайта,
+ * который получил меньше всего времени с учетом веса (stride scheduling).
+ * Сайт без задач не занимает потоков, и вся мощность пула уходит сайтам, у которых
+ * фронтир еще не пуст.
+ */
+@Component
+public class SharedCrawlScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedCrawlScheduler.class);
+
+    // Шаг сайта с весом 1; сайт с весом w продвигается на STRIDE / w за задачу
+    private static final long STRIDE = 1L << 20;
+
+    private final CrawlSettings settings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    // Сайты, у которых есть задачи в очереди
+    private final List<SiteExecutor> active = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    // Проход последней выданной задачи: от него отсчитывается сайт, у которого снова появились задачи
+    private long virtualTime;
+    // Пул остановлен: потоки завершаются, не дожидаясь новых задач
+    private boolean stopped;
+
+    public SharedCrawlScheduler(CrawlSettings settings) {
+        this.settings = settings;
+    }
+
+    // Очередь задач сайта; maxInFlight ограничивает число его задач, выполняемых одновременно
+    public SiteExecutor forSite(String name, int weight, int maxInFlight) {
+        startWorkers();
+        logger.info("Обход сайта {} в общем пуле: вес {}, одновременных задач не более {}.",
+                name, weight, maxInFlight == Integer.MAX_VALUE ? "без ограничения" : maxInFlight);
+        return new SiteExecutor(name, weight, maxInFlight);
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            stopped = true;
+            workers.forEach(Thread::interrupt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startWorkers() {
+        lock.lock();
+        try {
+            if (!workers.isEmpty()) {
+                return;
+            }
+            int count = Math.max(1, settings.getGlobalWorkers());
+            for (int i = 1; i <= count; i++) {
+                Thread worker = new Thread(this::runWorker, "crawl-worker-" + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+            logger.info("Общий пул обхода запущен: {} потоков.", count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            SiteExecutor site;
+            Runnable task;
+            lock.lock();
+            try {
+                while ((site = nextSite()) == null && !stopped) {
+                    workAvailable.await();
+                }
+                if (stopped) {
+                    return;
+                }
+                task = site.take(Thread.currentThread());
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // Поток пула общий для всех сайтов: ошибка одной задачи не должна его останавливать
+                logger.error("Ошибка задачи обхода сайта {}: {}", site.name, e.getMessage(), e);
+            } finally {
+                lock.lock();
+                try {
+                    site.finished(Thread.currentThread());
+                } finally {
+                    lock.unlock();
+                }
+                // Очищаем флаг прерывания, оставленный задачей или shutdownNow сайта, чтобы поток продолжил работу
+                Thread.interrupted();
+            }
+        }
+    }
+
+    // Сайт с задачами и свободным лимитом, получивший меньше всего времени; вызывается под lock
+    private SiteExecutor nextSite() {
+        SiteExecutor next = null;
+        for (SiteExecutor site : active) {
+            if (site.running < site.maxInFlight && (next == null || site.pass < next.pass)) {
+                next = site;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Очередь задач одного сайта в общем пуле. shutdown прекращает прием задач,
+     * shutdownNow также снимает задачи, еще не взятые потоками пула, и прерывает
+     * потоки, выполняющие задачи этого сайта.
+     */
+    public class SiteExecutor extends AbstractExecutorService {
+
+        private final String name;
+        private final long stride;
+        private final int maxInFlight;
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private final Condition terminated = lock.newCondition();
+        // Потоки пула, выполняющие задачи сайта
+        private final Set<Thread> runningThreads = new HashSet<>();
+        private long pass;
+        private int running;
+        private boolean shutdown;
+
+        private SiteExecutor(String name, int weight, int maxInFlight) {
+            this.name = name;
+            this.stride = STRIDE / Math.max(1, weight);
+            this.maxInFlight = Math.max(1, maxInFlight);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            lock.lock();
+            try {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Обход сайта " + name + " остановлен");
+                }
+                if (queue.isEmpty()) {
+                    // Сайт, простаивавший без задач, не получает преимущества за время простоя
+                    pass = Math.max(pass, virtualTime);
+                    active.add(this);
+                }
+                queue.add(task);
+                workAvailable.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Количество задач сайта, выполняющихся прямо сейчас
+        public int getInFlight() {
+            lock.lock();
+            try {
+                return running;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            lock.lock();
+            try {
+                shutdown = true;
+                signalIfTerminated();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            lock.lock();
+            try {
+                shutdown = true;
+                List<Runnable> dropped = new ArrayList<>(queue);
+                queue.clear();
+                active.remove(this);
+                runningThreads.forEach(Thread::interrupt);
+                signalIfTerminated();
+                return dropped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isShutdown() {
+            lock.lock();
+            try {
+                return shutdown;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            lock.lock();
+            try {
+                return shutdown && queue.isEmpty() && running == 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            lock.lock();
+            try {
+                while (!(shutdown && queue.isEmpty() && running == 0)) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = terminated.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Выдает задачу потоку пула; вызывается под lock
+        private Runnable take(Thread worker) {
+            Runnable task = queue.poll();
+            running++;
+            runningThreads.add(worker);
+            virtualTime = pass;
+            pass += stride;
+            if (queue.isEmpty()) {
+                active.remove(this);
+            }
+            return task;
+        }
+
+        // Вызывается под lock по завершении задачи
+        private void finished(Thread worker) {
+            running--;
+            runningThreads.remove(worker);
+            if (!queue.isEmpty() && running == maxInFlight - 1) {
+                // Сайт упирался в свой лимит, его задачи снова можно выдавать
+                workAvailable.signal();
+            }
+            signalIfTerminated();
+        }
+
+        private void signalIfTerminated() {
+            if (shutdown && queue.isEmpty() && running == 0) {
+                terminated.signalAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.services;
+
+/**
+ * 64-битный SimHash текста по шинглам из трех соседних слов. У почти одинаковых текстов
+ * отпечатки отличаются в немногих битах, поэтому близость текстов оценивается
+ * расстоянием Хэмминга между отпечатками.
+ */
+public final class SimHash {
+
+    public record Fingerprint(long hash, int words) {
+    }
+
+    private static final int SHINGLE = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    public static Fingerprint of(CharSequence text) {
+        int[] weights = new int[64];
+        long[] window = new long[SHINGLE];
+        int[] words = {0};
+        WordTokenizer.tokenize(text, (word, script, start, end) -> {
+            window[words[0] % SHINGLE] = hash(word);
+            words[0]++;
+            if (words[0] >= SHINGLE) {
+                // Хэши слов окна смешиваются по порядку, поэтому шингл учитывает порядок слов
+                long shingle = FNV_OFFSET;
+                for (int i = words[0] - SHINGLE; i < words[0]; i++) {
+                    shingle = mix(shingle ^ window[i % SHINGLE]);
+                }
+                for (int bit = 0; bit < 64; bit++) {
+                    weights[bit] += (shingle >>> bit & 1) == 1 ? 1 : -1;
+                }
+            }
+        });
+        long hash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                hash |= 1L << bit;
+            }
+        }
+        return new Fingerprint(hash, words[0]);
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static long hash(String word) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= word.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // Финальное перемешивание splitmix64, чтобы биты шинглов были равновероятны
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,228 @@
+package searchengine.services;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import searchengine.dto.indexing.PageSnapshot;
+import searchengine.model.Site;
+
+import java.net.MalformedURLException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Состояние обхода одного сайта: посещенные URL, счетчик незавершенных задач и
+ * все, что нужно задачам {@link PageCrawler}. Новые ссылки сразу передаются исполнителю; задача,
+ * готовая к запросу, получает слот хоста у {@link HostScheduler} или откладывается им, не занимая поток.
+ * При инкрементальном обходе здесь же хранятся сведения о ранее сохраненных страницах;
+ * страницы, которые так и не встретились при обходе, считаются исчезнувшими.
+ * Поставленные и обработанные URL записываются в {@link CrawlCheckpoint}, по которому
+ * остановленный обход можно продолжить. Правила robots.txt загружаются один раз на обход;
+ * запрещенные ими адреса не попадают в очередь. Посещенные URL отмечаются в каноническом виде
+ * по правилам сайта; отпечатки текстов страниц обхода собираются в {@link NearDuplicateIndex}.
+ */
+@Getter
+public class SiteCrawlContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteCrawlContext.class);
+
+    private final Site site;
+    private final VisitedUrlSet visitedUrls;
+    private final Executor executor;
+    private final long requestIntervalMs;
+    private final IndexingService indexingService;
+    private final CrawlServices services;
+    private final CrawlCheckpoint checkpoint;
+    private final RobotsRules robots;
+    private final UrlCanonicalizer canonicalizer;
+    private final NearDuplicateIndex nearDuplicates;
+    private final Map<String, PageSnapshot> previousPages = new ConcurrentHashMap<>();
+    private final Set<String> resumedFrontier = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    public SiteCrawlContext(Site site, VisitedUrlSet visitedUrls, Executor executor, long requestIntervalMs,
+                            IndexingService indexingService, CrawlServices services, CrawlCheckpoint checkpoint,
+                            RobotsRules robots, UrlCanonicalizer canonicalizer, NearDuplicateIndex nearDuplicates) {
+        this.site = site;
+        this.visitedUrls = visitedUrls;
+        this.executor = executor;
+        this.requestIntervalMs = requestIntervalMs;
+        this.indexingService = indexingService;
+        this.services = services;
+        this.checkpoint = checkpoint;
+        this.robots = robots;
+        this.canonicalizer = canonicalizer;
+        this.nearDuplicates = nearDuplicates;
+    }
+
+    /**
+     * Включает инкрементальный режим: страницы из снимка загружаются условными запросами.
+     * Сохраненные отпечатки проиндексированных страниц сразу попадают в индекс почти дубликатов,
+     * чтобы оригинал не зависел от порядка загрузки и страницы с ответом 304 тоже учитывались.
+     */
+    public void setPreviousPages(Collection<PageSnapshot> snapshots) {
+        for (PageSnapshot snapshot : snapshots) {
+            previousPages.put(snapshot.path(), snapshot);
+            if (snapshot.aliasOf() == null && snapshot.simhash() != null) {
+                nearDuplicates.seed(snapshot.simhash(), snapshot.path(), NearDuplicateIndex.rank(snapshot.id(), true));
+            }
+        }
+    }
+
+    // Забирает сведения о ранее сохраненной странице; оставшиеся после обхода страницы исчезли с сайта
+    public Optional<PageSnapshot> takePreviousPage(String path) {
+        return Optional.ofNullable(previousPages.remove(path));
+    }
+
+    /**
+     * Продолжает остановленный обход: URL из журнала отмечаются посещенными,
+     * а не обработанные ставятся в очередь. URL отмечается обработанным, когда его страница
+     * передана PageWriter, поэтому обработанные URL, чьих страниц нет в базе (не успели
+     * записаться до остановки), тоже обходятся заново. Реестр путей сайта уже должен быть загружен.
+     * Возвращает false, если продолжать нечего.
+     */
+    public boolean resume(CrawlCheckpoint.State state) {
+        state.visited().forEach(this::markVisited);
+        Set<String> frontier = new LinkedHashSet<>(state.frontier());
+        int unsaved = 0;
+        for (String url : state.visited()) {
+            if (!frontier.contains(url) && !isStored(url)) {
+                frontier.add(url);
+                unsaved++;
+            }
+        }
+        if (unsaved > 0) {
+            logger.info("Обработанных URL без сохраненной страницы: {}, они будут обойдены заново.", unsaved);
+        }
+        resumedFrontier.addAll(frontier);
+        frontier.forEach(this::enqueue);
+        return !frontier.isEmpty();
+    }
+
+    // Сохранена ли страница URL; некорректные адреса сохранять нечего
+    private boolean isStored(String url) {
+        try {
+            return services.getPathRegistry().contains(site.getId(), pathOf(url));
+        } catch (MalformedURLException | RuntimeException e) {
+            return true;
+        }
+    }
+
+    // true для URL фронтира продолженного обхода: страница могла быть сохранена до остановки
+    public boolean isResumed(String url) {
+        return resumedFrontier.contains(url);
+    }
+
+    // Отмечает URL посещенным по его каноническому виду; true, если URL встретился впервые
+    public boolean markVisited(String url) {
+        return visitedUrls.add(canonicalizer.canonicalize(url));
+    }
+
+    // Путь страницы в page.path
+    public String pathOf(String url) throws MalformedURLException {
+        return canonicalizer.pathOf(url);
+    }
+
+    // Путь оригинала с почти таким же текстом или null; previous — сведения о странице с прошлого обхода
+    public String findNearDuplicate(SimHash.Fingerprint fingerprint, String path, PageSnapshot previous) {
+        long rank = previous == null
+                ? NearDuplicateIndex.rank(null, false)
+                : NearDuplicateIndex.rank(previous.id(), previous.aliasOf() == null);
+        return nearDuplicates.findOrAdd(fingerprint, path, rank);
+    }
+
+    // Разрешен ли URL правилами robots.txt сайта
+    public boolean isAllowed(String url) {
+        return robots.isAllowed(url);
+    }
+
+    /**
+     * Начинает обход: ставит в очередь стартовый URL, затем адреса из карт сайта, еще не отмеченные
+     * посещенными. Карты читаются, пока обход уже идет; до их разбора обход не может завершиться,
+     * даже если все уже поставленные задачи выполнены. Возвращает число добавленных адресов из карт.
+     */
+    public int seed(String startUrl, Supplier<List<String>> sitemapUrls) {
+        pending.incrementAndGet();
+        int added = 0;
+        try {
+            enqueue(startUrl);
+            for (String url : sitemapUrls.get()) {
+                if (!indexingService.isIndexingInProgress()) {
+                    break;
+                }
+                if (markVisited(url)) {
+                    enqueue(url);
+                    added++;
+                }
+            }
+        } finally {
+            taskFinished();
+        }
+        return added;
+    }
+
+    // Ставит URL в очередь обхода; URL уже должен быть отмечен в visitedUrls
+    public void enqueue(String url) {
+        checkpoint.queued(url);
+        pending.incrementAndGet();
+        start(url);
+    }
+
+    // Резервирует слот хоста для запроса URL; false — слот не наступил, задача отложена и будет запущена снова
+    boolean acquireRequestSlot(String url, AbortableTask task) {
+        return services.getHostScheduler().acquire(url, requestIntervalMs, task, executor);
+    }
+
+    // Резервирует путь страницы сайта; false означает, что страница уже сохранена
+    public boolean claimPath(String path) {
+        return services.getPathRegistry().claim(site.getId(), path);
+    }
+
+    // Вызывается задачей, обработавшей URL полностью, включая ссылки страницы
+    void urlDone(String url) {
+        checkpoint.done(url);
+    }
+
+    // Вызывается задачей по завершении обработки URL
+    void taskFinished() {
+        if (pending.decrementAndGet() == 0) {
+            done.countDown();
+        }
+    }
+
+    // Ждет обхода всех поставленных URL; возвращает false, если индексация была остановлена
+    public boolean awaitCompletion() throws InterruptedException {
+        while (!done.await(1, TimeUnit.SECONDS)) {
+            if (!indexingService.isIndexingInProgress()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void start(String url) {
+        if (!indexingService.isIndexingInProgress()) {
+            taskFinished();
+            return;
+        }
+        try {
+            executor.execute(new PageCrawler(this, url));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Задача для {} отклонена: обход сайта остановлен.", url);
+            taskFinished();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package searchengine.services;
+
+import org.jsoup.HttpStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.DiscoverySettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Сведения о сайте, которые нужны до начала обхода: правила robots.txt и адреса
+ * из карт сайта. Правила загружаются один раз на обход и хранятся в {@link SiteCrawlContext}.
+ * Карты сайта читаются потоково, включая вложенные в sitemap index и сжатые .gz;
+ * найденные адреса возвращаются начиная с самых недавно измененных по lastmod.
+ */
+@Component
+public class SiteDiscovery {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteDiscovery.class);
+
+    // Больше этого размера robots.txt не читается (RFC 9309 требует не меньше 500 КиБ)
+    private static final int MAX_ROBOTS_BYTES = 512 * 1024;
+
+    private final DiscoverySettings settings;
+    private final PageFetcher pageFetcher;
+
+    public SiteDiscovery(DiscoverySettings settings, PageFetcher pageFetcher) {
+        this.settings = settings;
+        this.pageFetcher = pageFetcher;
+    }
+
+    /**
+     * Правила robots.txt сайта. Ответ 4xx означает, что ограничений нет; при ответе 5xx
+     * или недоступном сервере обход запрещен целиком (RFC 9309, 2.3.1.4).
+     */
+    public RobotsRules loadRobots(String siteUrl) {
+        if (!settings.isRobotsEnabled()) {
+            return RobotsRules.allowAll();
+        }
+        String robotsUrl = root(siteUrl) + "/robots.txt";
+        try {
+            String text = pageFetcher.fetchResource(robotsUrl, (body, contentType) -> readText(body));
+            RobotsRules rules = RobotsRules.parse(text, settings.getRobotsAgent());
+            logger.info("robots.txt сайта {} загружен: Crawl-delay {} мс, карт сайта {}.",
+                    siteUrl, rules.getCrawlDelayMs(), rules.getSitemaps().size());
+            return rules;
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() >= 400 && e.getStatusCode() < 500) {
+                logger.info("robots.txt сайта {} недоступен ({}), ограничений нет.", siteUrl, e.getStatusCode());
+                return RobotsRules.allowAll();
+            }
+            logger.warn("robots.txt сайта {} вернул ответ {}. Обход запрещен.", siteUrl, e.getStatusCode());
+        } catch (IOException e) {
+            logger.warn("Не удалось загрузить robots.txt сайта {}: {}. Обход запрещен.", siteUrl, e.getMessage());
+        }
+        return RobotsRules.unreachable();
+    }
+
+    // Интервал между запросами с учетом Crawl-delay
+    public long requestInterval(long configuredMs, RobotsRules rules) {
+        return Math.max(configuredMs, Math.min(rules.getCrawlDelayMs(), settings.getMaxCrawlDelayMs()));
+    }
+
+    /**
+     * Адреса страниц сайта из карт, указанных в robots.txt, или из /sitemap.xml.
+     * Адреса за пределами сайта и запрещенные robots.txt отбрасываются.
+     */
+    public List<String> sitemapUrls(String siteUrl, RobotsRules rules) {
+        if (!settings.isSitemapsEnabled()) {
+            return List.of();
+        }
+        Deque<String> sitemaps = new ArrayDeque<>(rules.getSitemaps());
+        if (sitemaps.isEmpty()) {
+            sitemaps.add(root(siteUrl) + "/sitemap.xml");
+        }
+        Set<String> seenSitemaps = new HashSet<>();
+        Set<String> seenPages = new HashSet<>();
+        List<SitemapReader.Entry> entries = new ArrayList<>();
+        int limit = settings.getMaxSitemapUrls();
+
+        while (!sitemaps.isEmpty() && seenSitemaps.size() < settings.getMaxSitemaps() && entries.size() < limit) {
+            String sitemapUrl = sitemaps.poll();
+            if (!seenSitemaps.add(sitemapUrl)) {
+                continue;
+            }
+            try {
+                pageFetcher.fetchResource(sitemapUrl, (body, contentType) -> {
+                    SitemapReader.read(decompress(body, sitemapUrl, contentType), entry -> {
+                        if (entry.loc().startsWith(siteUrl) && rules.isAllowed(entry.loc())
+                                && seenPages.add(entry.loc())) {
+                            entries.add(entry);
+                        }
+                        return entries.size() < limit;
+                    }, sitemaps::add);
+                    return null;
+                });
+            } catch (IOException e) {
+                logger.info("Карта сайта {} не прочитана: {}", sitemapUrl, e.getMessage());
+            }
+        }
+
+        // Недавно измененные страницы — первыми; без lastmod — в конце, в порядке карты
+        List<SitemapReader.Entry> ordered = new ArrayList<>(entries);
+        ordered.sort(Comparator.comparingLong((SitemapReader.Entry entry) -> lastModified(entry.lastmod())).reversed());
+        if (!ordered.isEmpty()) {
+            logger.info("Из карт сайта {} получено {} адресов ({} файлов карт).",
+                    siteUrl, ordered.size(), seenSitemaps.size());
+        }
+        return ordered.stream().map(SitemapReader.Entry::loc).toList();
+    }
+
+    private static InputStream decompress(InputStream body, String url, String contentType) throws IOException {
+        boolean gzip = url.toLowerCase(Locale.ROOT).endsWith(".gz")
+                || contentType != null && contentType.toLowerCase(Locale.ROOT).contains("gzip");
+        return gzip ? new GZIPInputStream(body, 8192) : body;
+    }
+
+    private static String readText(InputStream body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while (out.size() < MAX_ROBOTS_BYTES && (read = body.read(buffer)) != -1) {
+            out.write(buffer, 0, Math.min(read, MAX_ROBOTS_BYTES - out.size()));
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    // lastmod в формате W3C Datetime: дата или дата со временем; 0 — не указан или не разобран
+    private static long lastModified(String lastmod) {
+        if (lastmod == null || lastmod.isEmpty()) {
+            return 0;
+        }
+        try {
+            return OffsetDateTime.parse(lastmod).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(lastmod.length() > 10 ? lastmod.substring(0, 10) : lastmod)
+                        .toEpochDay() * 86_400_000L;
+            } catch (DateTimeParseException | StringIndexOutOfBoundsException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    // Схема и хост сайта: robots.txt и sitemap.xml лежат в корне хоста
+    private static String root(String siteUrl) {
+        try {
+            URI uri = URI.create(siteUrl);
+            if (uri.getScheme() != null && uri.getRawAuthority() != null) {
+                return uri.getScheme() + "://" + uri.getRawAuthority();
+            }
+        } catch (IllegalArgumentException e) {
+            // Берем адрес как есть
+        }
+        return siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl;
+    }
+}
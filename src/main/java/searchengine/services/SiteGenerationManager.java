@@ -0,0 +1,157 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.model.IndexingStatus;
+import searchengine.model.Site;
+import searchengine.repository.SiteRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Поколения индекса сайта. Полная переиндексация строит новое поколение рядом с действующим,
+ * поиск и статистика до переключения обслуживаются старым. Переключение — один UPDATE,
+ * а выведенное поколение удаляется в фоне через {@link SitePurgeService}.
+ * При запуске приложения поколения, оставшиеся в статусе INDEXING после аварийной остановки,
+ * помечаются FAILED, а унаследованный уникальный индекс по одному site.url удаляется.
+ */
+@Component
+public class SiteGenerationManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteGenerationManager.class);
+
+    private final SiteRepository siteRepository;
+    private final SitePurgeService purgeService;
+    private final CrawlCheckpointStore checkpointStore;
+    private final LemmaDictionary lemmaDictionary;
+    private final SiteStatisticsRegistry statisticsRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantLock collectLock = new ReentrantLock();
+
+    public SiteGenerationManager(SiteRepository siteRepository, SitePurgeService purgeService,
+                                 CrawlCheckpointStore checkpointStore, LemmaDictionary lemmaDictionary,
+                                 SiteStatisticsRegistry statisticsRegistry, JdbcTemplate jdbcTemplate) {
+        this.siteRepository = siteRepository;
+        this.purgeService = purgeService;
+        this.checkpointStore = checkpointStore;
+        this.lemmaDictionary = lemmaDictionary;
+        this.statisticsRegistry = statisticsRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Приводит базу в порядок после запуска: индексация в этот момент не идет, поэтому
+     * поколения в статусе INDEXING остались от прерванного процесса. Они помечаются FAILED;
+     * невыведенные в действующие после этого удаляются сборщиком, если их обход нельзя продолжить.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverAfterStartup() {
+        dropLegacyUrlIndex();
+        for (Site site : siteRepository.findAllByStatus(IndexingStatus.INDEXING)) {
+            site.updateStatus(IndexingStatus.FAILED, "Индексация прервана остановкой приложения");
+            siteRepository.save(site);
+            logger.warn("Поколение {} сайта {} осталось в статусе INDEXING после остановки и помечено FAILED{}.",
+                    site.getGeneration(), site.getUrl(), site.isLive() ? "" : ", будет удалено");
+        }
+    }
+
+    /**
+     * До поколений адрес сайта был уникален сам по себе. ddl-auto=update не удаляет прежний
+     * уникальный индекс, и второе поколение сайта не удается создать, поэтому индекс,
+     * состоящий из одного столбца url, удаляется при запуске.
+     */
+    private void dropLegacyUrlIndex() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT index_name FROM information_schema.statistics " +
+                        "WHERE table_schema = DATABASE() AND table_name = 'site' AND non_unique = 0 " +
+                        "GROUP BY index_name HAVING COUNT(*) = 1 AND MAX(column_name) = 'url'",
+                String.class);
+        for (String index : indexes) {
+            jdbcTemplate.execute("ALTER TABLE site DROP INDEX `" + index.replace("`", "``") + "`");
+            logger.info("Удален уникальный индекс {} по site.url: уникальность обеспечивает (url, generation).", index);
+        }
+    }
+
+    /**
+     * Создает новое поколение сайта со статусом INDEXING. Если действующего поколения нет,
+     * новое сразу становится действующим, чтобы ход первой индексации был виден.
+     */
+    public Site begin(searchengine.config.Site siteConfig) {
+        boolean hasLive = siteRepository.findByUrl(siteConfig.getUrl()) != null;
+        Site generation = new Site();
+        generation.setName(siteConfig.getName());
+        generation.setUrl(siteConfig.getUrl());
+        generation.setGeneration(siteRepository.findMaxGeneration(siteConfig.getUrl()) + 1);
+        generation.setLive(!hasLive);
+        generation.setStatus(IndexingStatus.INDEXING);
+        generation.setStatusTime(LocalDateTime.now());
+        generation = siteRepository.save(generation);
+        logger.info("Создано поколение {} сайта {}{}.", generation.getGeneration(), siteConfig.getUrl(),
+                hasLive ? "" : " (действующее)");
+        return generation;
+    }
+
+    // Делает построенное поколение действующим; прежнее поколение удаляется в фоне
+    public void promote(Site generation) {
+        LocalDateTime now = LocalDateTime.now();
+        if (generation.isLive()) {
+            generation.setStatus(IndexingStatus.INDEXED);
+            generation.setStatusTime(now);
+            siteRepository.save(generation);
+            return;
+        }
+
+        // Статус и признак действующего поколения меняются одним UPDATE: поколение со статусом
+        // INDEXED и live = false сборщик считает выведенным и удалил бы
+        Site previous = siteRepository.findByUrl(generation.getUrl());
+        int previousId = previous == null ? generation.getId() : previous.getId();
+        siteRepository.switchLive(previousId, generation.getId(), IndexingStatus.INDEXED, now);
+        generation.setStatus(IndexingStatus.INDEXED);
+        generation.setStatusTime(now);
+        generation.setLive(true);
+        logger.info("Поколение {} сайта {} стало действующим.", generation.getGeneration(), generation.getUrl());
+    }
+
+    // Удаляет выведенные и неудавшиеся поколения; строящиеся поколения не трогаются
+    @Scheduled(initialDelayString = "${indexing-settings.generations.collect-interval-ms:60000}",
+            fixedDelayString = "${indexing-settings.generations.collect-interval-ms:60000}")
+    public void collectRetired() {
+        if (!collectLock.tryLock()) {
+            return;
+        }
+        try {
+            for (Site site : siteRepository.findRetired()) {
+                if (checkpointStore.exists(site.getId())) {
+                    continue; // Остановленный обход можно продолжить в режиме resume
+                }
+                // Поколение могло стать действующим или снова строиться после выборки списка
+                Site current = siteRepository.findById(site.getId()).orElse(null);
+                if (current == null || current.isLive() || current.getStatus() == IndexingStatus.INDEXING) {
+                    continue;
+                }
+                try {
+                    collect(site);
+                } catch (RuntimeException e) {
+                    // Например, запись страниц остановленной индексации еще не завершилась; повторим позже
+                    logger.warn("Поколение {} сайта {} не удалено: {}", site.getGeneration(), site.getUrl(), e.getMessage());
+                }
+            }
+        } finally {
+            collectLock.unlock();
+        }
+    }
+
+    private void collect(Site site) {
+        logger.info("Удаление поколения {} сайта {} (id {}).", site.getGeneration(), site.getUrl(), site.getId());
+        lemmaDictionary.discard(site.getId());
+        purgeService.purge(site.getId());
+        statisticsRegistry.remove(site.getId());
+    }
+}
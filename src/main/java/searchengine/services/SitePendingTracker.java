@@ -0,0 +1,41 @@
+package searchengine.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Счетчики незавершенных элементов по сайтам для асинхронных стадий записи и индексации.
+ */
+public class SitePendingTracker {
+
+    private final Map<Integer, AtomicInteger> pendingBySite = new ConcurrentHashMap<>();
+
+    public void increment(int siteId) {
+        pendingBySite.computeIfAbsent(siteId, id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void decrement(int siteId) {
+        AtomicInteger pending = pendingBySite.get(siteId);
+        if (pending != null && pending.decrementAndGet() <= 0) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    // Ждет обработки всех элементов сайта или выполнения условия прекращения ожидания
+    public void await(int siteId, BooleanSupplier abandoned) throws InterruptedException {
+        AtomicInteger pending = pendingBySite.get(siteId);
+        if (pending == null) {
+            return;
+        }
+        synchronized (pending) {
+            while (pending.get() > 0 && !abandoned.getAsBoolean()) {
+                pending.wait(1_000);
+            }
+        }
+        pendingBySite.remove(siteId, pending);
+    }
+}
@@ -0,0 +1,139 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.PurgeSettings;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Удаление данных сайта без каскадов JPA. Страницы обходятся по возрастанию первичного ключа
+ * порциями: строки index и сами страницы порции удаляются одной короткой транзакцией,
+ * затем так же порциями по диапазонам id удаляются леммы и содержимое во внешнем хранилище. Ход удаления пишется в лог.
+ */
+@Service
+public class SitePurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SitePurgeService.class);
+
+    // Ход удаления страниц пишется в лог раз в столько порций
+    private static final int PROGRESS_LOG_CHUNKS = 50;
+
+    private static final String NEXT_PAGE_IDS_SQL =
+            "SELECT id FROM page WHERE site_id = ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String NEXT_LEMMA_ID_SQL =
+            "SELECT MAX(id) FROM (SELECT id FROM lemma WHERE site_id = ? AND id > ? ORDER BY id LIMIT ?) chunk";
+    private static final String DELETE_INDEX_SQL = "DELETE FROM `index` WHERE page_id IN (:ids)";
+    private static final String DELETE_PAGES_SQL =
+            "DELETE FROM page WHERE site_id = :siteId AND id BETWEEN :from AND :to";
+    private static final String DELETE_LEMMAS_SQL = "DELETE FROM lemma WHERE site_id = ? AND id > ? AND id <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PurgeSettings settings;
+    private final PageContents pageContents;
+
+    public SitePurgeService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                            PlatformTransactionManager transactionManager, PurgeSettings settings,
+                            PageContents pageContents) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.settings = settings;
+        this.pageContents = pageContents;
+    }
+
+    // Удаляет строки index, page и lemma сайта, затем саму запись site
+    public PurgeProgress purge(int siteId) {
+        Long totalPages = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page WHERE site_id = ?", Long.class, siteId);
+        PurgeProgress current = new PurgeProgress(siteId, totalPages == null ? 0 : totalPages);
+        long started = System.currentTimeMillis();
+        purgePages(current);
+        purgeLemmas(current);
+        pageContents.deleteSite(siteId);
+        jdbcTemplate.update("DELETE FROM site WHERE id = ?", siteId);
+        logger.info("Сайт {} удален за {} мс: index {}, page {}, lemma {}.", siteId,
+                System.currentTimeMillis() - started, current.indexRows, current.pages, current.lemmas);
+        return current;
+    }
+
+    private void purgePages(PurgeProgress current) {
+        int lastId = 0;
+        int chunks = 0;
+        while (true) {
+            List<Integer> ids = jdbcTemplate.queryForList(NEXT_PAGE_IDS_SQL, Integer.class,
+                    current.siteId, lastId, settings.getPagesPerChunk());
+            if (ids.isEmpty()) {
+                return;
+            }
+            int from = ids.get(0);
+            int to = ids.get(ids.size() - 1);
+            transactionTemplate.executeWithoutResult(status -> {
+                current.indexRows += namedJdbcTemplate.update(DELETE_INDEX_SQL, Map.of("ids", ids));
+                current.pages += namedJdbcTemplate.update(DELETE_PAGES_SQL,
+                        Map.of("siteId", current.siteId, "from", from, "to", to));
+            });
+            lastId = to;
+            if (++chunks % PROGRESS_LOG_CHUNKS == 0) {
+                logger.info("Удаление сайта {}: страниц {} из {}, строк index {}.",
+                        current.siteId, current.pages, current.totalPages, current.indexRows);
+            }
+        }
+    }
+
+    private void purgeLemmas(PurgeProgress current) {
+        int lastId = 0;
+        while (true) {
+            Integer to = jdbcTemplate.queryForObject(NEXT_LEMMA_ID_SQL, Integer.class,
+                    current.siteId, lastId, settings.getLemmasPerChunk());
+            if (to == null) {
+                return;
+            }
+            current.lemmas += jdbcTemplate.update(DELETE_LEMMAS_SQL, current.siteId, lastId, to);
+            lastId = to;
+        }
+    }
+
+    /**
+     * Количество строк, удаленных при удалении сайта.
+     */
+    public static class PurgeProgress {
+        private final int siteId;
+        private final long totalPages;
+        private long pages;
+        private long indexRows;
+        private long lemmas;
+
+        PurgeProgress(int siteId, long totalPages) {
+            this.siteId = siteId;
+            this.totalPages = totalPages;
+        }
+
+        public int getSiteId() {
+            return siteId;
+        }
+
+        public long getTotalPages() {
+            return totalPages;
+        }
+
+        public long getPages() {
+            return pages;
+        }
+
+        public long getIndexRows() {
+            return indexRows;
+        }
+
+        public long getLemmas() {
+            return lemmas;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.model.IndexingStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики страниц и лемм по сайтам. Краулер и индексатор увеличивают их в памяти,
+ * поэтому /api/statistics не выполняет COUNT(*) на каждый запрос. Периодически счетчики
+ * сайтов, которые сейчас не индексируются, сверяются с базой.
+ */
+@Component
+public class SiteStatisticsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteStatisticsRegistry.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, SiteCounters> counters = new ConcurrentHashMap<>();
+
+    public SiteStatisticsRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void pagesAdded(int siteId, int count) {
+        countersOf(siteId).pages.add(count);
+    }
+
+    public void lemmasAdded(int siteId, int count) {
+        countersOf(siteId).lemmas.add(count);
+    }
+
+    public long getPages(int siteId) {
+        SiteCounters siteCounters = counters.get(siteId);
+        return siteCounters == null ? 0 : siteCounters.pages.sum();
+    }
+
+    public long getLemmas(int siteId) {
+        SiteCounters siteCounters = counters.get(siteId);
+        return siteCounters == null ? 0 : siteCounters.lemmas.sum();
+    }
+
+    // Сбрасывает счетчики удаленного сайта
+    public void remove(int siteId) {
+        counters.remove(siteId);
+    }
+
+    /**
+     * Сверяет счетчики с базой. Счетчики не заменяются, а сдвигаются на разницу с базой
+     * относительно значения, снятого до запросов COUNT, поэтому увеличения, сделанные во время
+     * сверки, не теряются.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${indexing-settings.statistics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        Map<Integer, Observed> before = new HashMap<>();
+        counters.forEach((siteId, siteCounters) -> before.put(siteId,
+                new Observed(siteCounters, siteCounters.pages.sum(), siteCounters.lemmas.sum())));
+        Map<Integer, Long> pages = countBySite("SELECT site_id, COUNT(*) FROM page GROUP BY site_id");
+        Map<Integer, Long> lemmas = countBySite("SELECT site_id, COUNT(*) FROM lemma GROUP BY site_id");
+        Map<Integer, IndexingStatus> statuses = new HashMap<>();
+        jdbcTemplate.query("SELECT id, status FROM site",
+                rs -> {
+                    statuses.put(rs.getInt(1), IndexingStatus.valueOf(rs.getString(2)));
+                });
+
+        for (Map.Entry<Integer, IndexingStatus> site : statuses.entrySet()) {
+            // Во время индексации в базу пишут асинхронные стадии, сверка дала бы заниженные значения
+            if (site.getValue() == IndexingStatus.INDEXING && counters.containsKey(site.getKey())) {
+                continue;
+            }
+            SiteCounters siteCounters = countersOf(site.getKey());
+            Observed observed = before.get(site.getKey());
+            // Счетчики, созданные после снимка, начинались с нуля
+            boolean same = observed != null && observed.counters == siteCounters;
+            siteCounters.pages.add(pages.getOrDefault(site.getKey(), 0L) - (same ? observed.pages : 0));
+            siteCounters.lemmas.add(lemmas.getOrDefault(site.getKey(), 0L) - (same ? observed.lemmas : 0));
+        }
+        counters.keySet().retainAll(statuses.keySet());
+        logger.debug("Счетчики статистики сверены с базой для {} сайтов.", statuses.size());
+    }
+
+    private Map<Integer, Long> countBySite(String sql) {
+        Map<Integer, Long> result = new HashMap<>();
+        jdbcTemplate.query(sql,
+                rs -> {
+                    result.put(rs.getInt(1), rs.getLong(2));
+                });
+        return result;
+    }
+
+    private SiteCounters countersOf(int siteId) {
+        return counters.computeIfAbsent(siteId, id -> new SiteCounters());
+    }
+
+    private record Observed(SiteCounters counters, long pages, long lemmas) {
+    }
+
+    private static class SiteCounters {
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder lemmas = new LongAdder();
+    }
+}
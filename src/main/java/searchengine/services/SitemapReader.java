@@ -0,0 +1,94 @@
+package searchengine.services;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение sitemap.xml и sitemap index через StAX: документ не загружается
+ * в память целиком, каждая запись передается обработчику по мере разбора.
+ * DTD и внешние сущности отключены.
+ */
+public final class SitemapReader {
+
+    public record Entry(String loc, String lastmod) {
+    }
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private SitemapReader() {
+    }
+
+    /**
+     * Записи &lt;url&gt; передаются в pages, адреса вложенных карт из &lt;sitemap&gt; — в sitemaps.
+     * Чтение прекращается, когда pages вернет false.
+     */
+    public static void read(InputStream in, PageHandler pages, Consumer<String> sitemaps) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            String entryElement = null;
+            String loc = null;
+            String lastmod = null;
+            StringBuilder text = new StringBuilder();
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("url") || name.equals("sitemap")) {
+                        entryElement = name;
+                        loc = null;
+                        lastmod = null;
+                    }
+                    text.setLength(0);
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT && entryElement != null) {
+                    String name = reader.getLocalName();
+                    if (name.equals("loc")) {
+                        loc = text.toString().trim();
+                    } else if (name.equals("lastmod")) {
+                        lastmod = text.toString().trim();
+                    } else if (name.equals(entryElement)) {
+                        if (loc != null && !loc.isEmpty()) {
+                            if (name.equals("sitemap")) {
+                                sitemaps.accept(loc);
+                            } else if (!pages.accept(new Entry(loc, lastmod))) {
+                                return;
+                            }
+                        }
+                        entryElement = null;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Ошибка разбора карты сайта: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Поток закроет вызывающий код
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface PageHandler {
+        // false прекращает чтение
+        boolean accept(Entry entry);
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
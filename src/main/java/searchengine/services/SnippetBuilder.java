@@ -0,0 +1,102 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Вырезает из текста страницы фрагмент вокруг слов запроса и выделяет их тегом &lt;b&gt;.
+ * Слова запроса берутся из сохраненных при индексации позиций; текст лемматизируется
+ * только для строк index без позиций.
+ */
+@Component
+public class SnippetBuilder {
+
+    private final Lemmatizer lemmatizer;
+    private final SearchSettings settings;
+
+    public SnippetBuilder(Lemmatizer lemmatizer, SearchSettings settings) {
+        this.lemmatizer = lemmatizer;
+        this.settings = settings;
+    }
+
+    /**
+     * Фрагмент по границам слов запроса из index.positions. Позиции передаются, только если
+     * text совпадает с текстом, по которому они посчитаны (вызывающий сверяет хеш содержимого);
+     * если позиций нет или они выходят за границы слов, слова ищутся заново.
+     */
+    public String build(String text, List<int[]> positions, Set<String> queryLemmas) {
+        if (positions == null || !matchesText(text, positions)) {
+            return build(text, queryLemmas);
+        }
+        positions.sort(Comparator.comparingInt(match -> match[0]));
+        List<int[]> matches = new ArrayList<>(positions.size());
+        int previousEnd = 0;
+        for (int[] match : positions) {
+            // Одно слово может нести несколько лемм запроса
+            if (match[0] >= previousEnd) {
+                matches.add(match);
+                previousEnd = match[1];
+            }
+        }
+        return highlight(text, matches, settings.getSnippetLength());
+    }
+
+    public String build(String text, Set<String> queryLemmas) {
+        List<int[]> matches = new ArrayList<>();
+        WordTokenizer.tokenize(text, (word, script, start, end) -> {
+            for (String lemma : lemmatizer.getLemmas(word, script)) {
+                if (queryLemmas.contains(lemma)) {
+                    matches.add(new int[]{start, end});
+                    break;
+                }
+            }
+        });
+        return highlight(text, matches, settings.getSnippetLength());
+    }
+
+    // Фрагмент длиной около length символов, начиная немного раньше первого совпадения
+    static String highlight(String text, List<int[]> matches, int length) {
+        if (matches.isEmpty()) {
+            return escape(text.substring(0, Math.min(length, text.length())));
+        }
+        int start = Math.max(0, matches.get(0)[0] - length / 4);
+        int end = Math.min(text.length(), start + length);
+        // Не режем слова на границах фрагмента
+        while (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) start--;
+        while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) end++;
+
+        StringBuilder snippet = new StringBuilder(end - start + 32);
+        if (start > 0) snippet.append("...");
+        int position = start;
+        for (int[] match : matches) {
+            if (match[0] < start) continue;
+            if (match[1] > end) break;
+            snippet.append(escape(text.substring(position, match[0])))
+                    .append("<b>").append(escape(text.substring(match[0], match[1]))).append("</b>");
+            position = match[1];
+        }
+        snippet.append(escape(text.substring(position, end)));
+        if (end < text.length()) snippet.append("...");
+        return snippet.toString();
+    }
+
+    // Каждая позиция должна приходиться на слово текста; защищает от поврежденных записей
+    private static boolean matchesText(String text, List<int[]> positions) {
+        for (int[] match : positions) {
+            if (match[0] < 0 || match[1] <= match[0] || match[1] > text.length()
+                    || !Character.isLetter(text.charAt(match[0])) || !Character.isLetter(text.charAt(match[1] - 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
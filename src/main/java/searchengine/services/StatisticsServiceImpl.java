@@ -8,48 +8,65 @@ import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
+import searchengine.model.IndexingStatus;
+import searchengine.repository.SiteRepository;
 
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final Random random = new Random();
+    // Статус сайта из настроек, который еще ни разу не индексировался; ошибкой не считается
+    private static final String NOT_INDEXED = "NOT_INDEXED";
+
     private final SitesList sites;
+    private final SiteRepository siteRepository;
+    private final SiteStatisticsRegistry statisticsRegistry;
+    private final IndexingService indexingService;
 
     @Override
     public StatisticsResponse getStatistics() {
-        String[] statuses = { "INDEXED", "FAILED", "INDEXING" };
-        String[] errors = {
-                "Ошибка индексации: главная страница сайта не доступна",
-                "Ошибка индексации: сайт не доступен",
-                ""
-        };
+        // Таблица site небольшая; показываются действующие поколения, количества берутся из счетчиков в памяти
+        Map<String, searchengine.model.Site> indexedSites = siteRepository.findAllByLiveTrue().stream()
+                .collect(Collectors.toMap(searchengine.model.Site::getUrl, Function.identity(), (a, b) -> a));
+        Set<String> indexingUrls = siteRepository.findAllByStatus(IndexingStatus.INDEXING).stream()
+                .map(searchengine.model.Site::getUrl)
+                .collect(Collectors.toSet());
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
-        total.setIndexing(true);
+        total.setIndexing(indexingService.isIndexingInProgress());
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<Site> sitesList = sites.getSites();
-        for(int i = 0; i < sitesList.size(); i++) {
-            Site site = sitesList.get(i);
+        for (Site site : sites.getSites()) {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(site.getName());
             item.setUrl(site.getUrl());
-            int pages = random.nextInt(1_000);
-            int lemmas = pages * random.nextInt(1_000);
-            item.setPages(pages);
-            item.setLemmas(lemmas);
-            item.setStatus(statuses[i % 3]);
-            item.setError(errors[i % 3]);
-            item.setStatusTime(System.currentTimeMillis() -
-                    (random.nextInt(10_000)));
-            total.setPages(total.getPages() + pages);
-            total.setLemmas(total.getLemmas() + lemmas);
+
+            searchengine.model.Site indexedSite = indexedSites.get(site.getUrl());
+            if (indexedSite == null) {
+                // Первое поколение сайта может еще строиться
+                item.setStatus(indexingUrls.contains(site.getUrl()) ? IndexingStatus.INDEXING.name() : NOT_INDEXED);
+                item.setError("");
+                item.setStatusTime(System.currentTimeMillis());
+            } else {
+                int pages = (int) statisticsRegistry.getPages(indexedSite.getId());
+                int lemmas = (int) statisticsRegistry.getLemmas(indexedSite.getId());
+                item.setPages(pages);
+                item.setLemmas(lemmas);
+                item.setStatus(indexedSite.getStatus().name());
+                item.setError(indexedSite.getLastError() == null ? "" : indexedSite.getLastError());
+                item.setStatusTime(indexedSite.getStatusTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                total.setPages(total.getPages() + pages);
+                total.setLemmas(total.getLemmas() + lemmas);
+            }
             detailed.add(item);
         }
 
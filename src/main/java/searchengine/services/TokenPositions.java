@@ -0,0 +1,75 @@
+package searchengine.services;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Компактная запись позиций вхождений леммы в текст страницы для столбца index.positions.
+ * Вхождение — пара границ слова [start, end) в тексте; пары идут по возрастанию и
+ * записываются как varint-разности: start от конца предыдущего слова и длина слова.
+ * Обычное вхождение занимает два-три байта.
+ */
+public final class TokenPositions {
+
+    private TokenPositions() {
+    }
+
+    // offsets — плоский массив start0, end0, start1, end1, ...; length — число занятых элементов
+    public static byte[] encode(int[] offsets, int length) {
+        byte[] out = new byte[length * 5];
+        int size = 0;
+        int previousEnd = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            size = writeVarint(out, size, offsets[i] - previousEnd);
+            size = writeVarint(out, size, offsets[i + 1] - offsets[i]);
+            previousEnd = offsets[i + 1];
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    // Добавляет в matches пары {start, end}; возвращает false, если запись повреждена
+    public static boolean decode(byte[] data, List<int[]> matches) {
+        int position = 0;
+        int previousEnd = 0;
+        int[] value = new int[1];
+        while (position < data.length) {
+            position = readVarint(data, position, value);
+            if (position < 0) {
+                return false;
+            }
+            int start = previousEnd + value[0];
+            position = readVarint(data, position, value);
+            if (position < 0) {
+                return false;
+            }
+            previousEnd = start + value[0];
+            matches.add(new int[]{start, previousEnd});
+        }
+        return true;
+    }
+
+    private static int writeVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarint(byte[] data, int position, int[] value) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position >= data.length) {
+                return -1;
+            }
+            byte b = data[position++];
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                value[0] = result;
+                return position;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,131 @@
+package searchengine.services;
+
+import searchengine.config.CanonicalRules;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Канонический URL по правилам сайта: поверх {@link UrlNormalizer} отбрасывает индексные
+ * файлы, завершающий "/" и параметры отслеживания, сортирует параметры запроса и при
+ * необходимости приводит путь к нижнему регистру. Путь канонического URL вместе с запросом
+ * хранится в page.path.
+ */
+public class UrlCanonicalizer {
+
+    private final CanonicalRules rules;
+    private final List<String> indexFiles;
+
+    public UrlCanonicalizer(CanonicalRules rules) {
+        this.rules = rules;
+        this.indexFiles = rules.getIndexFiles().stream().map(file -> "/" + file.toLowerCase(Locale.ROOT)).toList();
+    }
+
+    public String canonicalize(String url) {
+        String normalized = UrlNormalizer.normalize(url);
+        URI uri;
+        try {
+            uri = new URI(normalized);
+        } catch (URISyntaxException e) {
+            return normalized;
+        }
+        if (uri.getHost() == null) {
+            return normalized;
+        }
+        StringBuilder canonical = new StringBuilder(normalized.length());
+        canonical.append(uri.getScheme()).append("://").append(uri.getRawAuthority());
+        canonical.append(path(uri.getRawPath()));
+        String query = query(uri.getRawQuery());
+        if (query != null) {
+            canonical.append('?').append(query);
+        }
+        return canonical.toString();
+    }
+
+    // Путь страницы с запросом, под которым она сохраняется в page.path; url должен быть абсолютным http(s)-адресом
+    public String pathOf(String url) throws MalformedURLException {
+        validate(url);
+        String canonical = canonicalize(url);
+        try {
+            URI uri = new URI(canonical);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+        } catch (URISyntaxException e) {
+            return canonical;
+        }
+    }
+
+    private static void validate(String url) throws MalformedURLException {
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+        String scheme = uri.getScheme();
+        if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+            throw new MalformedURLException("Неподдерживаемая схема: " + url);
+        }
+        if (uri.getHost() == null) {
+            throw new MalformedURLException("Не указан хост: " + url);
+        }
+    }
+
+    private String path(String rawPath) {
+        String path = rawPath == null || rawPath.isEmpty() ? "/" : rawPath;
+        if (rules.isLowercasePath()) {
+            path = path.toLowerCase(Locale.ROOT);
+        }
+        String lower = path.toLowerCase(Locale.ROOT);
+        for (String indexFile : indexFiles) {
+            if (lower.endsWith(indexFile)) {
+                path = path.substring(0, path.length() - indexFile.length() + 1);
+                break;
+            }
+        }
+        if (rules.isRemoveTrailingSlash()) {
+            while (path.length() > 1 && path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+        }
+        return path;
+    }
+
+    private String query(String rawQuery) {
+        if (!rules.isKeepQuery() || rawQuery == null || rawQuery.isEmpty()) {
+            return null;
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int equals = param.indexOf('=');
+            String name = (equals >= 0 ? param.substring(0, equals) : param).toLowerCase(Locale.ROOT);
+            if (!isDropped(name)) {
+                params.add(param);
+            }
+        }
+        if (params.isEmpty()) {
+            return null;
+        }
+        if (rules.isSortParams()) {
+            params.sort(null);
+        }
+        return String.join("&", params);
+    }
+
+    private boolean isDropped(String name) {
+        for (String pattern : rules.getDropParams()) {
+            String lower = pattern.toLowerCase(Locale.ROOT);
+            if (lower.endsWith("*") ? name.startsWith(lower.substring(0, lower.length() - 1)) : name.equals(lower)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
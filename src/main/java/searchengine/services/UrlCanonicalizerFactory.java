@@ -0,0 +1,19 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.CanonicalizationSettings;
+import searchengine.config.Site;
+
+@Component
+public class UrlCanonicalizerFactory {
+
+    private final CanonicalizationSettings settings;
+
+    public UrlCanonicalizerFactory(CanonicalizationSettings settings) {
+        this.settings = settings;
+    }
+
+    public UrlCanonicalizer create(Site siteConfig) {
+        return new UrlCanonicalizer(siteConfig.getCanonical() != null ? siteConfig.getCanonical() : settings);
+    }
+}
@@ -0,0 +1,43 @@
+package searchengine.services;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * Приводит URL к единому виду для проверки посещенных ссылок:
+ * схема и хост в нижнем регистре, без порта по умолчанию и фрагмента, пустой путь заменяется на "/".
+ */
+public final class UrlNormalizer {
+
+    private UrlNormalizer() {
+    }
+
+    public static String normalize(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            String scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase(Locale.ROOT);
+            String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+                port = -1;
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+
+            StringBuilder normalized = new StringBuilder(url.length());
+            normalized.append(scheme).append("://").append(host);
+            if (port != -1) {
+                normalized.append(':').append(port);
+            }
+            normalized.append(path);
+            if (uri.getRawQuery() != null) {
+                normalized.append('?').append(uri.getRawQuery());
+            }
+            return normalized.toString();
+        } catch (URISyntaxException e) {
+            // Некорректный URL сравниваем как есть, без фрагмента
+            int hash = url.indexOf('#');
+            return hash >= 0 ? url.substring(0, hash) : url;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package searchengine.services;
+
+/**
+ * Потокобезопасное множество посещенных URL одного сайта.
+ * Ключом служит URL, приведенный {@link UrlNormalizer}.
+ */
+public interface VisitedUrlSet {
+
+    // Отмечает URL посещенным; возвращает true, если URL встретился впервые
+    boolean add(String normalizedUrl);
+
+    long size();
+
+    // Оценка занимаемой памяти в байтах (в куче и вне ее)
+    long memoryBytes();
+
+    // Оценка доли ложных срабатываний при проверке новых URL
+    double falsePositiveRate();
+
+    default void close() {
+    }
+
+    default String describe() {
+        return String.format("%s: URL %d, память ~%d КБ, ложные срабатывания %.6f",
+                getClass().getSimpleName(), size(), memoryBytes() / 1024, falsePositiveRate());
+    }
+}
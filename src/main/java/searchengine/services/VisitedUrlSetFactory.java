@@ -0,0 +1,21 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.VisitedUrlSettings;
+
+@Component
+public class VisitedUrlSetFactory {
+
+    private final VisitedUrlSettings settings;
+
+    public VisitedUrlSetFactory(VisitedUrlSettings settings) {
+        this.settings = settings;
+    }
+
+    public VisitedUrlSet create() {
+        if (settings.getType() == VisitedUrlSettings.Type.BLOOM) {
+            return new FingerprintVisitedUrlSet(settings.getExpectedUrls(), settings.getFalsePositiveRate());
+        }
+        return new ConcurrentVisitedUrlSet();
+    }
+}
@@ -0,0 +1,78 @@
+package searchengine.services;
+
+/**
+ * Разбиение текста на слова за один проход по символам без регулярных выражений
+ * и промежуточных копий текста. Слово — непрерывная последовательность букв одной
+ * письменности: кириллицы или латиницы; смена письменности завершает слово.
+ * Слово сразу приводится к нижнему регистру.
+ */
+public final class WordTokenizer {
+
+    public enum Script {
+        CYRILLIC,
+        LATIN
+    }
+
+    @FunctionalInterface
+    public interface TokenHandler {
+        // start и end — границы слова в исходном тексте
+        void token(String word, Script script, int start, int end);
+    }
+
+    // Длиннее этого слова не бывает в словарях морфологии, такие последовательности пропускаются
+    private static final int MAX_WORD_LENGTH = 64;
+
+    private WordTokenizer() {
+    }
+
+    // Передает обработчику все слова текста и возвращает их количество
+    public static int tokenize(CharSequence text, TokenHandler handler) {
+        char[] buffer = new char[MAX_WORD_LENGTH];
+        int length = 0;
+        int start = 0;
+        Script current = null;
+        int tokens = 0;
+
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            Script script = scriptOf(c);
+            if (script != current && current != null) {
+                if (length <= MAX_WORD_LENGTH) {
+                    handler.token(new String(buffer, 0, length), current, start, i);
+                    tokens++;
+                }
+                current = null;
+            }
+            if (script == null) {
+                continue;
+            }
+            if (current == null) {
+                current = script;
+                start = i;
+                length = 0;
+            }
+            if (length < MAX_WORD_LENGTH) {
+                buffer[length] = toLowerCase(c);
+            }
+            length++;
+        }
+        return tokens;
+    }
+
+    public static Script scriptOf(char c) {
+        if (c >= 'а' && c <= 'я' || c >= 'А' && c <= 'Я' || c == 'ё' || c == 'Ё') {
+            return Script.CYRILLIC;
+        }
+        if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+            return Script.LATIN;
+        }
+        return null;
+    }
+
+    private static char toLowerCase(char c) {
+        if (c >= 'А' && c <= 'Я') return (char) (c + ('а' - 'А'));
+        if (c >= 'A' && c <= 'Z') return (char) (c + ('a' - 'A'));
+        if (c == 'Ё') return 'ё';
+        return c;
+    }
+}
@@ -0,0 +1,114 @@
+package searchengine.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Таймаут запроса HttpClientFetchClient на заглушке сервера: он ограничивает и чтение тела,
+ * а не только ожидание заголовков.
+ */
+class HttpClientFetchClientTest {
+
+    private static final int REQUEST_TIMEOUT_MS = 300;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private HttpClientFetchClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/page", exchange -> {
+            byte[] body = "<html><body>страница</body></html>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/gzip", exchange -> {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write("сжатая страница".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        // Заголовки и начало тела приходят сразу, остаток тела — только после окончания теста
+        server.createContext("/stalled", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("<html>".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                release.await(10, TimeUnit.SECONDS);
+                out.write("</html>".getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // Клиент закрыл соединение по таймауту
+            }
+        });
+        server.start();
+        client = new HttpClientFetchClient("test-agent", 1000, REQUEST_TIMEOUT_MS, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void readsCompleteBody() throws IOException {
+        try (FetchClient.Response response = client.execute(url("/page"), "GET", Map.of())) {
+            assertEquals(200, response.statusCode());
+            assertEquals("<html><body>страница</body></html>", read(response.body()));
+        }
+    }
+
+    @Test
+    void decodesGzipBody() throws IOException {
+        try (FetchClient.Response response = client.execute(url("/gzip"), "GET", Map.of())) {
+            assertEquals("сжатая страница", read(response.body()));
+        }
+    }
+
+    @Test
+    void stalledBodyFailsAfterRequestTimeout() throws IOException {
+        long started = System.nanoTime();
+        try (FetchClient.Response response = client.execute(url("/stalled"), "GET", Map.of())) {
+            assertEquals(200, response.statusCode());
+            InputStream body = response.body();
+            assertThrows(HttpTimeoutException.class, () -> read(body));
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(elapsedMs < REQUEST_TIMEOUT_MS + 2000, "Чтение тела заняло " + elapsedMs + " мс");
+    }
+
+    private String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    private static String read(InputStream body) throws IOException {
+        return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,112 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Разбор robots.txt: выбор группы по токену продукта, самое длинное правило, «*» и «$».
+ */
+class RobotsRulesTest {
+
+    private static final String AGENT = "SearchEngineBot/1.0 (+https://example.ru/bot)";
+    private static final String SITE = "https://example.ru";
+
+    @Test
+    void selectsLongestAgentThatPrefixesProductToken() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /
+
+                User-agent: SearchEngine
+                Disallow: /short
+
+                User-agent: searchenginebot
+                Disallow: /long
+                """, AGENT);
+
+        assertTrue(rules.isAllowed(SITE + "/"));
+        assertTrue(rules.isAllowed(SITE + "/short"));
+        assertFalse(rules.isAllowed(SITE + "/long"));
+    }
+
+    @Test
+    void mergesGroupsWithSameAgentAndFallsBackToStar() {
+        String text = """
+                User-agent: searchenginebot
+                Disallow: /a
+
+                User-agent: otherbot
+                Disallow: /
+
+                User-agent: SearchEngineBot
+                Disallow: /b
+                Crawl-delay: 2
+
+                User-agent: *
+                Disallow: /c
+                """;
+        RobotsRules rules = RobotsRules.parse(text, AGENT);
+        assertFalse(rules.isAllowed(SITE + "/a"));
+        assertFalse(rules.isAllowed(SITE + "/b"));
+        assertTrue(rules.isAllowed(SITE + "/c"));
+        assertEquals(2000, rules.getCrawlDelayMs());
+
+        RobotsRules fallback = RobotsRules.parse(text, "UnknownBot");
+        assertTrue(fallback.isAllowed(SITE + "/a"));
+        assertFalse(fallback.isAllowed(SITE + "/c"));
+    }
+
+    @Test
+    void longestMatchWinsAndAllowWinsTie() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /catalog
+                Allow: /catalog/public
+                Allow: /page
+                Disallow: /page
+                """, AGENT);
+
+        assertFalse(rules.isAllowed(SITE + "/catalog/private"));
+        assertTrue(rules.isAllowed(SITE + "/catalog/public/item"));
+        assertTrue(rules.isAllowed(SITE + "/page"));
+    }
+
+    @Test
+    void supportsWildcardAndEndAnchor() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /search*q=
+                """, AGENT);
+
+        assertFalse(rules.isAllowed(SITE + "/docs/report.pdf"));
+        assertTrue(rules.isAllowed(SITE + "/docs/report.pdf?download=1"));
+        assertFalse(rules.isAllowed(SITE + "/search/results?page=2&q=test"));
+        assertTrue(rules.isAllowed(SITE + "/search/results?page=2"));
+    }
+
+    @Test
+    void manyWildcardsDoNotBacktrackExponentially() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*a*a*a*a*a*a*a*a*a*a*a*a*b
+                """, AGENT);
+        String url = SITE + "/?" + "a".repeat(5000);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> assertTrue(rules.isAllowed(url)));
+    }
+
+    @Test
+    void unreachableDisallowsEverything() {
+        assertTrue(RobotsRules.unreachable().isUnreachable());
+        assertFalse(RobotsRules.unreachable().isAllowed(SITE + "/"));
+        assertFalse(RobotsRules.allowAll().isUnreachable());
+        assertTrue(RobotsRules.allowAll().isAllowed(SITE + "/any"));
+    }
+}
@@ -0,0 +1,94 @@
+package searchengine.services;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.DiscoverySettings;
+import searchengine.config.FetchSettings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Загрузка robots.txt на заглушке сервера: ответ 4xx снимает ограничения, ответ 5xx
+ * и недоступный сервер запрещают обход (RFC 9309, 2.3.1).
+ */
+class SiteDiscoveryTest {
+
+    private HttpServer server;
+    private PageFetcher pageFetcher;
+    private SiteDiscovery discovery;
+    private volatile int status;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/robots.txt", exchange -> {
+            byte[] body = "User-agent: *\nDisallow: /private\n".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        FetchSettings fetchSettings = new FetchSettings();
+        fetchSettings.setRequestTimeoutMs(2000);
+        pageFetcher = new PageFetcher(fetchSettings, new CrawlMetrics(new SimpleMeterRegistry()));
+        discovery = new SiteDiscovery(new DiscoverySettings(), pageFetcher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pageFetcher.close();
+        server.stop(0);
+    }
+
+    @Test
+    void appliesLoadedRules() {
+        status = 200;
+        RobotsRules rules = discovery.loadRobots(siteUrl());
+
+        assertFalse(rules.isUnreachable());
+        assertFalse(rules.isAllowed(siteUrl() + "/private/page"));
+        assertTrue(rules.isAllowed(siteUrl() + "/public"));
+    }
+
+    @Test
+    void clientErrorAllowsEverything() {
+        status = 404;
+        RobotsRules rules = discovery.loadRobots(siteUrl());
+
+        assertFalse(rules.isUnreachable());
+        assertTrue(rules.isAllowed(siteUrl() + "/private/page"));
+    }
+
+    @Test
+    void serverErrorMakesSiteUnreachable() {
+        status = 503;
+        RobotsRules rules = discovery.loadRobots(siteUrl());
+
+        assertTrue(rules.isUnreachable());
+        assertFalse(rules.isAllowed(siteUrl() + "/"));
+    }
+
+    @Test
+    void connectionFailureMakesSiteUnreachable() {
+        String url = siteUrl();
+        server.stop(0);
+
+        assertTrue(discovery.loadRobots(url).isUnreachable());
+    }
+
+    private String siteUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+}
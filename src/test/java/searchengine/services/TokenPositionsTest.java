@@ -0,0 +1,113 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Запись позиций в index.positions: обратимость кодирования и отказ на поврежденных данных.
+ */
+class TokenPositionsTest {
+
+    @Test
+    void decodesWhatWasEncoded() {
+        int[] offsets = {0, 6, 7, 12, 40, 45, 45, 52};
+
+        List<int[]> matches = new ArrayList<>();
+        assertTrue(TokenPositions.decode(TokenPositions.encode(offsets, offsets.length), matches));
+
+        assertArrayEquals(offsets, flatten(matches));
+    }
+
+    @Test
+    void encodesOnlyOccupiedPartOfArray() {
+        int[] offsets = {3, 8, 10, 15, -1, -1};
+
+        List<int[]> matches = new ArrayList<>();
+        assertTrue(TokenPositions.decode(TokenPositions.encode(offsets, 4), matches));
+
+        assertArrayEquals(Arrays.copyOf(offsets, 4), flatten(matches));
+    }
+
+    @Test
+    void keepsLargeGapsAndLongWords() {
+        // Разности на границах длины varint: 127/128, 16383/16384 и многобайтовые значения
+        int[] offsets = {127, 255, 16_638, 33_022, 2_000_000, 2_000_127, 300_000_000, 300_016_384};
+
+        List<int[]> matches = new ArrayList<>();
+        assertTrue(TokenPositions.decode(TokenPositions.encode(offsets, offsets.length), matches));
+
+        assertArrayEquals(offsets, flatten(matches));
+    }
+
+    @Test
+    void writesShortOccurrenceInTwoBytes() {
+        assertArrayEquals(new byte[]{5, 7}, TokenPositions.encode(new int[]{5, 12}, 2));
+    }
+
+    @Test
+    void emptyRecordHasNoMatches() {
+        byte[] data = TokenPositions.encode(new int[0], 0);
+
+        List<int[]> matches = new ArrayList<>();
+        assertEquals(0, data.length);
+        assertTrue(TokenPositions.decode(data, matches));
+        assertTrue(matches.isEmpty());
+    }
+
+    @Test
+    void rejectsTruncatedRecord() {
+        int[] offsets = {0, 6, 200, 16_584, 70_000, 70_300};
+        byte[] data = TokenPositions.encode(offsets, offsets.length);
+        // Длины записей из первых вхождений: обрыв ровно на такой границе неотличим от короткой записи
+        Set<Integer> boundaries = new HashSet<>();
+        for (int pairs = 0; pairs <= offsets.length / 2; pairs++) {
+            boundaries.add(TokenPositions.encode(offsets, pairs * 2).length);
+        }
+
+        for (int length = 0; length < data.length; length++) {
+            List<int[]> matches = new ArrayList<>();
+            boolean complete = TokenPositions.decode(Arrays.copyOf(data, length), matches);
+            assertEquals(boundaries.contains(length), complete, "Обрыв после " + length + " байт");
+            if (complete) {
+                assertArrayEquals(Arrays.copyOf(offsets, matches.size() * 2), flatten(matches));
+            }
+        }
+    }
+
+    @Test
+    void rejectsRecordEndingInsideVarint() {
+        assertFalse(TokenPositions.decode(new byte[]{5, (byte) 0x81}, new ArrayList<>()));
+        assertFalse(TokenPositions.decode(new byte[]{(byte) 0x80}, new ArrayList<>()));
+    }
+
+    @Test
+    void rejectsRecordWithoutWordLength() {
+        assertFalse(TokenPositions.decode(new byte[]{0, 6, 3}, new ArrayList<>()));
+    }
+
+    @Test
+    void rejectsOverlongVarint() {
+        byte[] data = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01, 0x01};
+
+        assertFalse(TokenPositions.decode(data, new ArrayList<>()));
+    }
+
+    private static int[] flatten(List<int[]> matches) {
+        int[] offsets = new int[matches.size() * 2];
+        for (int i = 0; i < matches.size(); i++) {
+            offsets[2 * i] = matches.get(i)[0];
+            offsets[2 * i + 1] = matches.get(i)[1];
+        }
+        return offsets;
+    }
+}